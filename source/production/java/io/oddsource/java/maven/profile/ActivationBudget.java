@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.building.ModelProblemCollector;
+import org.apache.maven.model.profile.ProfileActivationContext;
+
+/**
+ * Bounds the time during which finer activations may execute commands and read files, as configured with the
+ * {@code finer.activator.budget} property, so that a few misbehaving checks cannot stall the build for minutes. The
+ * budget is measured on the wall clock from the start of the session, so that activations evaluated concurrently
+ * share it instead of each consuming it separately. Each command is given at most the time left until the deadline as
+ * its timeout, and once the deadline has passed, activations that would have to execute a command or read a file are
+ * inactive (reusing earlier results is still allowed). The time each command and file took is only recorded to report
+ * what used the budget.
+ */
+final class ActivationBudget implements UserPropertiesHelperMixin
+{
+    private static final String BUDGET = "finer.activator.budget";
+
+    private static final String POLICY = "finer.activator.budget.policy";
+
+    private static final int TOP_CONSUMERS = 5;
+
+    private final LongAdder consumed = new LongAdder();
+
+    private final Map<String, LongAdder> consumers = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean exhaustionReported = new AtomicBoolean();
+
+    private volatile long started = System.nanoTime();
+
+    /**
+     * Get what remains of the budget, reporting (once per session) that it has been exhausted.
+     *
+     * @param context The profile activation context
+     * @param property The property being evaluated
+     * @param problems A collector of problems
+     * @return the remaining time in nanoseconds, {@link Long#MAX_VALUE} if there is no budget, or {@code -1} if the
+     *     budget is exhausted or invalid and the activation is inactive.
+     */
+    long remaining(
+        final ProfileActivationContext context,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        final String value = this.getUserOrSystemProperty(ActivationBudget.BUDGET, context);
+        if(value == null || value.isEmpty())
+        {
+            return Long.MAX_VALUE;
+        }
+        final long budget = Utilities.parseDuration(value);
+        if(budget < 0)
+        {
+            Utilities.problem(problems, property,
+                "The property '" + ActivationBudget.BUDGET + "' ('" + value +
+                "') must be a positive duration, such as '30s', '2m', or '1h'."
+            );
+            return -1;
+        }
+        final String policyValue = this.getUserOrSystemProperty(ActivationBudget.POLICY, context);
+        final BudgetPolicy policy = BudgetPolicy.parse(policyValue);
+        if(policy == null)
+        {
+            Utilities.problem(problems, property,
+                "The property '" + ActivationBudget.POLICY + "' ('" + policyValue +
+                "') must be one of 'inactive' or 'fail'."
+            );
+            return -1;
+        }
+
+        final long remaining = budget - (System.nanoTime() - this.started);
+        if(remaining > 0)
+        {
+            return remaining;
+        }
+        // a problem reported while prefetching would be lost, so the first evaluation that can report it does
+        if(problems != BaseFinerActivator.PREFETCH_PROBLEMS && this.exhaustionReported.compareAndSet(false, true))
+        {
+            final String message = "The finer activation budget of " + Utilities.formatDuration(budget) +
+                                   " ('" + ActivationBudget.BUDGET + "') was exhausted, so this and all remaining " +
+                                   "finer activations that execute commands or read files are inactive. " +
+                                   this.describeConsumers();
+            if(policy == BudgetPolicy.FAIL)
+            {
+                Utilities.problem(problems, property, message);
+            }
+            else
+            {
+                Utilities.warning(problems, property, message);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Record time spent by an activation.
+     *
+     * @param consumer What the time was spent on, such as a command
+     * @param nanoseconds The time spent
+     */
+    void consume(final String consumer, final long nanoseconds)
+    {
+        this.consumed.add(nanoseconds);
+        this.consumers.computeIfAbsent(consumer, key -> new LongAdder()).add(nanoseconds);
+    }
+
+    /**
+     * Describe the total time consumed, and what consumed the most.
+     *
+     * @return the description.
+     */
+    String describeConsumers()
+    {
+        return "Finer activations spent " + Utilities.formatDuration(this.consumed.sum()) +
+               " executing commands and reading files" + (this.consumers.isEmpty() ? "." : ", most of it on " +
+               this.consumers.entrySet().stream()
+                   .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                   .limit(ActivationBudget.TOP_CONSUMERS)
+                   .map(e -> e.getKey() + " (" + Utilities.formatDuration(e.getValue().sum()) + ")")
+                   .collect(Collectors.joining(", ")) + ".");
+    }
+
+    /**
+     * Start the budget again, at the start (or end) of a session.
+     */
+    void reset()
+    {
+        this.started = System.nanoTime();
+        this.consumed.reset();
+        this.consumers.clear();
+        this.exhaustionReported.set(false);
+    }
+}
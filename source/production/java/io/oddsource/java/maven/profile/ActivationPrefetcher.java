@@ -0,0 +1,314 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Profile;
+import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
+import org.apache.maven.model.profile.DefaultProfileActivationContext;
+import org.apache.maven.model.profile.ProfileActivationContext;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Evaluates the finer activations of every POM in the reactor concurrently, before Maven builds any models, so that
+ * the activators find the results of their subprocesses ready instead of running them one after another. Opt-in with
+ * the {@code finer.activator.prefetch} property, because it also runs commands in profiles that Maven would never
+ * have evaluated (for example, profiles activated explicitly with {@code -P}).
+ *
+ * <p>The POMs of the reactor are found by following the modules of the requested POM, including the modules of its
+ * profiles, and the parents of every POM found, by their relative paths, where shared profiles often live. Parents
+ * that are only in a repository are not prefetched, and neither are the modules of a parent outside the reactor.
+ */
+final class ActivationPrefetcher implements UserPropertiesHelperMixin
+{
+    private static final String PREFETCH = "finer.activator.prefetch";
+
+    private static final String THREADS = "finer.activator.prefetch.threads";
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final Logger logger;
+
+    private final List<FinerActivator> activators;
+
+    ActivationPrefetcher(final Logger logger, final List<FinerActivator> activators)
+    {
+        this.logger = logger;
+        this.activators = activators;
+    }
+
+    /**
+     * Prefetch all finer activations in the reactor of the request, if enabled, and wait for them to complete.
+     *
+     * @param request The request of the Maven session that is starting
+     */
+    void prefetch(final MavenExecutionRequest request)
+    {
+        final DefaultProfileActivationContext context = new DefaultProfileActivationContext();
+        context.setUserProperties(request.getUserProperties());
+        context.setSystemProperties(request.getSystemProperties());
+        if(!Boolean.parseBoolean(this.getUserOrSystemProperty(ActivationPrefetcher.PREFETCH, context)) ||
+           request.getPom() == null)
+        {
+            return;
+        }
+
+        final long start = System.nanoTime();
+        final Map<String, List<Callable<Void>>> groups = new LinkedHashMap<>();
+        this.collect(request.getPom(), null, context, new HashMap<>(), groups);
+        if(groups.isEmpty())
+        {
+            return;
+        }
+
+        // the activations of one command run one after another, so that they can share a single execution
+        final List<Callable<Void>> tasks = new ArrayList<>(groups.size());
+        groups.values().forEach(group -> tasks.add(() -> {
+            for(final Callable<Void> activation : group)
+            {
+                try
+                {
+                    activation.call();
+                }
+                catch(final RuntimeException e)
+                {
+                    // the activation is evaluated again, and any failure reported, when Maven builds the model
+                    this.logger.debug("ActivationPrefetcher: prefetching failed: " + e);
+                }
+            }
+            return null;
+        }));
+
+        final ExecutorService executor = ActivationPrefetcher.newExecutor(
+            Math.min(tasks.size(), this.getThreads(context))
+        );
+        try
+        {
+            executor.invokeAll(tasks);
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        if(this.logger.isDebugEnabled())
+        {
+            this.logger.debug(
+                "ActivationPrefetcher: prefetched " + tasks.size() + " distinct finer activations in " +
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms."
+            );
+        }
+    }
+
+    /**
+     * Collect the finer activations of a POM, and of its modules and parent.
+     *
+     * @param pom The POM, or the directory containing it
+     * @param child The parent element of the POM of which this is the parent, or {@code null} if it is a module
+     * @param context The profile activation context
+     * @param visited The POMs visited, and whether their modules were followed
+     * @param groups The activations collected, by the name of the activator property
+     */
+    @SuppressWarnings("checkstyle:ReturnCount")
+    private void collect(
+        final File pom,
+        final Parent child,
+        final ProfileActivationContext context,
+        final Map<File, Boolean> visited,
+        final Map<String, List<Callable<Void>>> groups
+    )
+    {
+        final File normalized = pom.getAbsoluteFile().toPath().normalize().toFile();
+        final File file = normalized.isDirectory() ? new File(normalized, "pom.xml") : normalized;
+        // a parent visited first is visited again as a module, for its modules, but its profiles are collected once
+        final Boolean modulesFollowed = visited.get(file);
+        if(!file.isFile() || modulesFollowed != null && (modulesFollowed || child != null))
+        {
+            return;
+        }
+
+        final Model model;
+        try(InputStream input = new FileInputStream(file))
+        {
+            model = new MavenXpp3Reader().read(input, false);
+        }
+        catch(final IOException | XmlPullParserException e)
+        {
+            // Maven reports this once it reads the POM itself
+            this.logger.debug("ActivationPrefetcher: could not read " + file + ": " + e);
+            return;
+        }
+        // as in Maven, a POM at the relative path of the parent is only the parent if it has its coordinates
+        if(child != null && !ActivationPrefetcher.isParent(model, child))
+        {
+            return;
+        }
+        visited.put(file, child == null);
+
+        final List<String> modules = new ArrayList<>(model.getModules());
+        for(final Profile profile : model.getProfiles())
+        {
+            modules.addAll(profile.getModules());
+            if(modulesFollowed == null && profile.getActivation() != null &&
+               profile.getActivation().getProperty() != null)
+            {
+                this.collect(profile.getActivation().getProperty(), context, groups);
+            }
+        }
+        if(child == null)
+        {
+            for(final String module : modules)
+            {
+                this.collect(new File(file.getParentFile(), module), null, context, visited, groups);
+            }
+        }
+        final Parent parent = model.getParent();
+        // an empty relative path means that the parent is only in a repository
+        if(parent != null && parent.getRelativePath() != null && !parent.getRelativePath().isEmpty())
+        {
+            this.collect(new File(file.getParentFile(), parent.getRelativePath()), parent, context, visited, groups);
+        }
+    }
+
+    private static boolean isParent(final Model model, final Parent child)
+    {
+        final String groupId = model.getGroupId() != null || model.getParent() == null ?
+            model.getGroupId() :
+            model.getParent().getGroupId();
+        return Objects.equals(groupId, child.getGroupId()) &&
+               Objects.equals(model.getArtifactId(), child.getArtifactId());
+    }
+
+    private void collect(
+        final ActivationProperty property,
+        final ProfileActivationContext context,
+        final Map<String, List<Callable<Void>>> groups
+    )
+    {
+        if(property.getName() == null)
+        {
+            return;
+        }
+        final Matcher matcher = FinerProfileSelector.ACTIVATOR_PATTERN.matcher(property.getName());
+        if(!matcher.matches())
+        {
+            return;
+        }
+        final String name = matcher.group("property");
+        for(final FinerActivator activator : this.activators)
+        {
+            if(activator.getSupportedActivatorBracketName().equals(matcher.group("activator")))
+            {
+                groups.computeIfAbsent(name, key -> new ArrayList<>()).add(() -> {
+                    activator.prefetch(name, property, context);
+                    return null;
+                });
+            }
+        }
+    }
+
+    private int getThreads(final ProfileActivationContext context)
+    {
+        final String value = this.getUserOrSystemProperty(ActivationPrefetcher.THREADS, context);
+        if(value != null && !value.isEmpty())
+        {
+            try
+            {
+                final int threads = Integer.parseInt(value);
+                if(threads > 0)
+                {
+                    return threads;
+                }
+            }
+            catch(final NumberFormatException e)
+            {
+                // fall through to the default
+            }
+            this.logger.warn(
+                "The property '" + ActivationPrefetcher.THREADS + "' ('" + value + "') must be a positive number; " +
+                "using the default."
+            );
+        }
+        return Math.max(4, Runtime.getRuntime().availableProcessors());
+    }
+
+    private static ExecutorService newExecutor(final int threads)
+    {
+        final ThreadFactory virtual = ActivationPrefetcher.virtualThreadFactory();
+        if(virtual != null)
+        {
+            return Executors.newFixedThreadPool(threads, virtual);
+        }
+        return Executors.newFixedThreadPool(threads, runnable -> {
+            final Thread thread = new Thread(
+                runnable,
+                "finer-activator-prefetch-" + ActivationPrefetcher.THREAD_COUNTER.incrementAndGet()
+            );
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Virtual threads were added in Java 21, so they are created reflectively; the activations mostly wait on
+     * subprocesses and files, which is what virtual threads are for.
+     *
+     * @return a factory for virtual threads, or {@code null} before Java 21.
+     */
+    private static ThreadFactory virtualThreadFactory()
+    {
+        try
+        {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builderType.getMethod("name", String.class, long.class).invoke(builder, "finer-activator-prefetch-", 1L);
+            final Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        }
+        catch(final ReflectiveOperationException | RuntimeException e)
+        {
+            return null;
+        }
+    }
+}
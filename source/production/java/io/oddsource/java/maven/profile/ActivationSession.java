@@ -0,0 +1,274 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+
+/**
+ * State shared by all finer activators for the duration of one Maven build session. Maven calls the profile selector
+ * once for every module and every parent POM, so anything expensive to compute (such as executing a subprocess) is
+ * remembered here instead of being recomputed for every model. {@link FinerSessionParticipant} resets this state at
+ * the start and end of every session.
+ *
+ * @since 1.0.0
+ */
+@Named("finerActivationSession")
+@Singleton
+public class ActivationSession
+{
+    private final Map<SubprocessCommand, SubprocessResult> subprocessResults = new ConcurrentHashMap<>();
+
+    private final Map<List<Object>, Boolean> streamedMatches = new ConcurrentHashMap<>();
+
+    private final Map<SubprocessCommand, SubprocessFailure> subprocessFailures = new ConcurrentHashMap<>();
+
+    private final SingleFlight<List<Object>, SubprocessResult> subprocessExecutions = new SingleFlight<>();
+
+    private final SingleFlight<List<Object>, Boolean> subprocessStreams = new SingleFlight<>();
+
+    private final SingleFlight<List<Object>, String> fileReads = new SingleFlight<>();
+
+    private final SubprocessScheduler subprocessScheduler = new SubprocessScheduler();
+
+    private final ActivationBudget activationBudget = new ActivationBudget();
+
+    private final Map<Path, SubprocessResultStore> subprocessResultStores = new ConcurrentHashMap<>();
+
+    private final Map<String, ParsedName> parsedCommands = new ConcurrentHashMap<>();
+
+    private final Map<String, ParsedName> parsedFileNames = new ConcurrentHashMap<>();
+
+    private final Map<String, Optional<ArtifactVersion>> parsedVersions = new ConcurrentHashMap<>();
+
+    // the Maven daemon (mvnd) runs many builds in the same JVM, so what is known about files can outlive a session
+    private final FileContentsCache fileContentsCache = new FileContentsCache(
+        FileContentsCache.MAX_BYTES,
+        System.getProperty("mvnd.home") != null
+    );
+
+    private ShellCoprocess shellCoprocess;
+
+    private PathIndex pathIndex;
+
+    /**
+     * Construct an ActivationSession.
+     */
+    public ActivationSession()
+    {
+    }
+
+    SubprocessResult getSubprocessResult(final SubprocessCommand command)
+    {
+        return this.subprocessResults.get(command);
+    }
+
+    void putSubprocessResult(final SubprocessCommand command, final SubprocessResult result)
+    {
+        // a result with output also serves activators that need only the exit code, so it is never replaced
+        this.subprocessResults.merge(command, result, (old, replacement) -> old.hasOutput() ? old : replacement);
+    }
+
+    /**
+     * Get the failure of a command, if executing the command again would fail the same way.
+     *
+     * @param command The command
+     * @return the failure, or {@code null} if the command has to be executed.
+     */
+    SubprocessFailure getSubprocessFailure(final SubprocessCommand command)
+    {
+        final SubprocessFailure failure = this.subprocessFailures.get(command);
+        return failure != null && failure.appliesTo(command) ? failure : null;
+    }
+
+    void putSubprocessFailure(final SubprocessCommand command, final SubprocessFailure failure)
+    {
+        // a command that timed out with a longer timeout also times out with a shorter one
+        this.subprocessFailures.merge(
+            command,
+            failure,
+            (old, replacement) -> old.getTimeout() >= replacement.getTimeout() ? old : replacement
+        );
+    }
+
+    Boolean getStreamedMatch(final List<Object> key)
+    {
+        return this.streamedMatches.get(key);
+    }
+
+    void putStreamedMatch(final List<Object> key, final Boolean matched)
+    {
+        this.streamedMatches.put(key, matched);
+    }
+
+    SingleFlight<List<Object>, SubprocessResult> getSubprocessExecutions()
+    {
+        return this.subprocessExecutions;
+    }
+
+    SingleFlight<List<Object>, Boolean> getSubprocessStreams()
+    {
+        return this.subprocessStreams;
+    }
+
+    SingleFlight<List<Object>, String> getFileReads()
+    {
+        return this.fileReads;
+    }
+
+    SubprocessScheduler getSubprocessScheduler()
+    {
+        return this.subprocessScheduler;
+    }
+
+    ActivationBudget getActivationBudget()
+    {
+        return this.activationBudget;
+    }
+
+    /**
+     * Get the persistent subprocess results in a directory, reading them once per session.
+     *
+     * @param directory The directory containing the results
+     * @param clear Whether to delete the stored results when reading them
+     * @param timeToLive How old (in nanoseconds) results may be
+     * @return the results.
+     */
+    SubprocessResultStore getSubprocessResultStore(final Path directory, final boolean clear, final long timeToLive)
+    {
+        return this.subprocessResultStores.computeIfAbsent(
+            directory,
+            key -> SubprocessResultStore.open(key, clear, timeToLive)
+        );
+    }
+
+    /**
+     * Get the parsed name of a command property, parsing it once per session.
+     *
+     * @param name The name of the property, without the activator bracket
+     * @param defaultCharset The charset if the name has no {@code [CHARSET]}, which must be the same for every call
+     * @return the parsed name.
+     */
+    ParsedName getParsedCommand(final String name, final Charset defaultCharset)
+    {
+        return this.parsedCommands.computeIfAbsent(name, key -> ParsedName.command(key, defaultCharset));
+    }
+
+    /**
+     * Get the parsed name of a file property, parsing it once per session.
+     *
+     * @param name The name of the property, without the activator bracket
+     * @param defaultCharset The charset if the name has no {@code [CHARSET]}, which must be the same for every call
+     * @return the parsed name.
+     */
+    ParsedName getParsedFileName(final String name, final Charset defaultCharset)
+    {
+        return this.parsedFileNames.computeIfAbsent(name, key -> ParsedName.file(key, defaultCharset));
+    }
+
+    /**
+     * Get the version in the output of a command, parsing it once per session.
+     *
+     * @param output The output of the command
+     * @return the version, or {@code null} if the output does not contain a version.
+     */
+    ArtifactVersion getParsedVersion(final String output)
+    {
+        return this.parsedVersions.computeIfAbsent(
+            output,
+            key -> Optional.ofNullable(SubprocessVersionActivator.parseVersion(key))
+        ).orElse(null);
+    }
+
+    FileContentsCache getFileContentsCache()
+    {
+        return this.fileContentsCache;
+    }
+
+    /**
+     * Get the index of the programs on the {@code PATH}, creating it once per session.
+     *
+     * @return the index.
+     */
+    synchronized PathIndex getPathIndex()
+    {
+        if(this.pathIndex == null)
+        {
+            this.pathIndex = PathIndex.ofEnvironment();
+        }
+        return this.pathIndex;
+    }
+
+    /**
+     * Get the shell coprocess of this session, starting it if it is not running.
+     *
+     * @param nullFile The operating system's null device
+     * @return the shell, or {@code null} if it could not be started.
+     */
+    synchronized ShellCoprocess getShellCoprocess(final File nullFile)
+    {
+        if(this.shellCoprocess == null || !this.shellCoprocess.isUsable())
+        {
+            if(!ShellCoprocess.isSupported())
+            {
+                return null;
+            }
+            try
+            {
+                this.shellCoprocess = ShellCoprocess.start(nullFile);
+            }
+            catch(final IOException e)
+            {
+                return null;
+            }
+        }
+        return this.shellCoprocess;
+    }
+
+    void reset()
+    {
+        synchronized(this)
+        {
+            if(this.shellCoprocess != null)
+            {
+                this.shellCoprocess.close();
+                this.shellCoprocess = null;
+            }
+            this.pathIndex = null;
+        }
+        this.subprocessScheduler.reset();
+        this.activationBudget.reset();
+        this.subprocessResults.clear();
+        this.streamedMatches.clear();
+        this.subprocessFailures.clear();
+        this.subprocessResultStores.clear();
+        this.parsedCommands.clear();
+        this.parsedFileNames.clear();
+        this.parsedVersions.clear();
+        this.fileContentsCache.reset();
+    }
+}
@@ -18,10 +18,14 @@ package io.oddsource.java.maven.profile;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.maven.model.ActivationProperty;
 import org.apache.maven.model.Profile;
@@ -39,18 +43,32 @@ public abstract class BaseFileContentsActivator extends BaseFinerActivator
 {
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
 
+    /**
+     * Files at least this large are mapped into memory instead of read, if the activator can match them mapped.
+     */
+    static final long MAPPING_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Files of at least one chunk are searched as they are read instead of read first, if the activator can do so.
+     */
+    static final long STREAMING_THRESHOLD = StreamingContains.CHUNK_SIZE;
+
     private static final String PRELUDE = "The file named by the property 'name' ('";
 
     private final Logger logger;
 
+    private final ActivationSession session;
+
     /**
      * Construct a BaseFileContentsActivator.
      *
      * @param logger A Maven logger, auto-injected by Maven
+     * @param session The activation session, auto-injected by Maven
      */
-    protected BaseFileContentsActivator(final Logger logger)
+    protected BaseFileContentsActivator(final Logger logger, final ActivationSession session)
     {
         this.logger = logger;
+        this.session = session;
     }
 
     @Override
@@ -63,14 +81,16 @@ public abstract class BaseFileContentsActivator extends BaseFinerActivator
         final ModelProblemCollector problems
     )
     {
-        final Utilities.CharsetAndRemainder helper = new Utilities.CharsetAndRemainder(
+        final ParsedName name = this.session.getParsedFileName(
             unparsedFileName,
-            BaseFileContentsActivator.DEFAULT_CHARSET,
-            property,
-            problems
+            BaseFileContentsActivator.DEFAULT_CHARSET
         );
-        final Charset charset = helper.getCharset();
-        final String fileName = helper.getRemainder();
+        if(name.getProblem() != null)
+        {
+            Utilities.problem(problems, property, name.getProblem());
+        }
+        final Charset charset = name.getCharset();
+        final String fileName = name.getRemainder();
         if(charset == null || fileName == null)
         {
             this.logger.debug("BaseFileContentsActivator: charset == null || filename == null");
@@ -84,24 +104,211 @@ public abstract class BaseFileContentsActivator extends BaseFinerActivator
             return false;
         }
 
-        final String contents;
+        final FileContentsCache.Entry cached = this.session.getFileContentsCache().get(file, charset);
+        final Boolean decision = cached == null ? null : cached.getDecision(this.activation(property));
+        if(decision != null)
+        {
+            this.logger.debug("BaseFileContentsActivator(" + fileName + "): cached result = " + decision);
+            return decision;
+        }
+
+        return this.evaluate(file, charset, fileName, property, context, problems, cached);
+    }
+
+    @Override
+    public void prefetch(
+        final String unparsedFileName,
+        final ActivationProperty property,
+        final ProfileActivationContext context
+    )
+    {
+        // evaluating the property leaves the file's contents and result in the session; problems are reported later
+        this.isActive(unparsedFileName, property, null, context, BaseFinerActivator.PREFETCH_PROBLEMS);
+    }
+
+    @SuppressWarnings("checkstyle:ReturnCount")
+    private boolean evaluate(
+        final File file,
+        final Charset charset,
+        final String fileName,
+        final ActivationProperty property,
+        final ProfileActivationContext context,
+        final ModelProblemCollector problems,
+        final FileContentsCache.Entry cached
+    )
+    {
+        String contents = cached == null ? null : cached.getContents();
+        if(contents == null)
+        {
+            if(this.session.getActivationBudget().remaining(context, property, problems) < 0)
+            {
+                return false;
+            }
+
+            // a result that came with problems (such as a file that could not be read) is not remembered
+            final AtomicBoolean reported = new AtomicBoolean();
+            final Boolean matched = this.matchLargeFile(file, charset, fileName, property, context, request -> {
+                reported.set(true);
+                problems.add(request);
+            });
+            if(matched != null)
+            {
+                if(!reported.get())
+                {
+                    this.remember(cached, property, matched);
+                }
+                return matched;
+            }
+
+            contents = this.read(file, charset, fileName, property, problems);
+            if(contents == null)
+            {
+                return false;
+            }
+            if(cached != null)
+            {
+                this.session.getFileContentsCache().putContents(cached, contents);
+            }
+        }
+
+        if(this.logger.isDebugEnabled())
+        {
+            this.logger.debug("BaseFileContentsActivator: contents of file " + fileName + " = " + contents);
+        }
+
+        final boolean matched = this.contentsMatch(contents, property, problems);
+        if(this.isResultCacheable(property))
+        {
+            this.remember(cached, property, matched);
+        }
+        return matched;
+    }
+
+    private void remember(
+        final FileContentsCache.Entry cached,
+        final ActivationProperty property,
+        final boolean matched
+    )
+    {
+        if(cached != null)
+        {
+            this.session.getFileContentsCache().putDecision(cached, this.activation(property), matched);
+        }
+    }
+
+    private String activation(final ActivationProperty property)
+    {
+        return this.getSupportedActivatorBracketName() + '\u0000' + property.getValue();
+    }
+
+    private String read(
+        final File file,
+        final Charset charset,
+        final String fileName,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        // concurrent evaluations of the same file wait for a single read
+        return this.session.getFileReads().execute(
+            Arrays.asList(file, charset),
+            problems,
+            flightProblems -> {
+                final long start = System.nanoTime();
+                try
+                {
+                    return BaseFileContentsActivator.readContents(file, charset, fileName, property, flightProblems);
+                }
+                finally
+                {
+                    this.session.getActivationBudget().consume("file " + file, System.nanoTime() - start);
+                }
+            }
+        );
+    }
+
+    private static String readContents(
+        final File file,
+        final Charset charset,
+        final String fileName,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
         try
         {
-            contents = new String(Files.readAllBytes(file.toPath()), charset);
+            return new String(Files.readAllBytes(file.toPath()), charset);
         }
         catch(final IOException | InvalidPathException | SecurityException e)
         {
-            return Utilities.problem(problems, property,
+            Utilities.problem(problems, property,
                 BaseFileContentsActivator.PRELUDE + fileName + "') exists but could not be read."
             );
+            return null;
         }
+    }
 
-        if(this.logger.isDebugEnabled())
+    /**
+     * Match the contents of a large file without reading it into the heap, if the activator supports it.
+     *
+     * @return whether the contents match, or {@code null} if the file is not large, or its contents cannot be matched
+     *     without reading them, and must be read instead.
+     */
+    @SuppressWarnings("checkstyle:ReturnCount")
+    private Boolean matchLargeFile(
+        final File file,
+        final Charset charset,
+        final String fileName,
+        final ActivationProperty property,
+        final ProfileActivationContext context,
+        final ModelProblemCollector problems
+    )
+    {
+        final long length = file.length();
+        if(length < BaseFileContentsActivator.STREAMING_THRESHOLD)
         {
-            this.logger.debug("BaseFileContentsActivator: contents of file " + fileName + " = " + contents);
+            return null;
+        }
+        final long start = System.nanoTime();
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            final Boolean streamed = this.streamedContentsMatch(channel, charset, property, problems);
+            if(streamed != null)
+            {
+                this.logger.debug("BaseFileContentsActivator: matched file " + fileName + " as it was read");
+                return streamed;
+            }
+            if(length < BaseFileContentsActivator.MAPPING_THRESHOLD)
+            {
+                return null;
+            }
+            final long size = channel.size();
+            if(size > Integer.MAX_VALUE)
+            {
+                return null;
+            }
+            // the mapping outlives the channel, and is released when the buffer is garbage collected
+            final MappedCharSequence contents = MappedCharSequence.of(
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size),
+                charset
+            );
+            if(contents == null)
+            {
+                return null;
+            }
+            this.logger.debug("BaseFileContentsActivator: matching " + size + " mapped bytes of file " + fileName);
+            return this.mappedContentsMatch(contents, property, context, problems);
+        }
+        catch(final IOException | InvalidPathException | SecurityException e)
+        {
+            return Utilities.problem(problems, property,
+                BaseFileContentsActivator.PRELUDE + fileName + "') exists but could not be read."
+            );
+        }
+        finally
+        {
+            this.session.getActivationBudget().consume("file " + file, System.nanoTime() - start);
         }
-
-        return this.contentsMatch(contents, property, problems);
     }
 
     private File getAbsoluteFile(
@@ -137,4 +344,62 @@ public abstract class BaseFileContentsActivator extends BaseFinerActivator
         ActivationProperty property,
         ModelProblemCollector problems
     );
+
+    /**
+     * Indicates whether the result of matching a file against the property is always the same for the same contents,
+     * and can be remembered for the session instead of matching the contents again. It is not if matching reports
+     * problems, which must be reported by every evaluation.
+     *
+     * @param property The property object
+     * @return whether the result can be remembered.
+     */
+    boolean isResultCacheable(final ActivationProperty property)
+    {
+        return true;
+    }
+
+    /**
+     * Called before {@link #contentsMatch} for a file of at least {@link #STREAMING_THRESHOLD} bytes, so that the
+     * concrete activator can validate the contents as it reads them, and stop reading as soon as it knows the result.
+     * By default, the contents are not matched this way.
+     *
+     * @param channel The file, positioned at its beginning, which may also be read with absolute positions
+     * @param charset The charset of the file contents
+     * @param property The property object
+     * @param problems A collector of problems
+     * @return whether the file contents match, or {@code null} (before reading anything) if they must be matched
+     *     another way.
+     * @throws IOException if the file could not be read
+     */
+    Boolean streamedContentsMatch(
+        final FileChannel channel,
+        final Charset charset,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    ) throws IOException
+    {
+        return null;
+    }
+
+    /**
+     * Called before {@link #contentsMatch} for a file of at least {@link #MAPPING_THRESHOLD} bytes that was not
+     * matched as it was read, once the file is mapped into memory, so that the concrete activator can validate the
+     * contents, which are decoded as they are read. By default, the contents are not matched this way.
+     *
+     * @param contents The file contents
+     * @param property The property object
+     * @param context The profile activation context
+     * @param problems A collector of problems
+     * @return whether the file contents match, or {@code null} if the contents must be read instead.
+     * @throws IOException if the file could not be read
+     */
+    Boolean mappedContentsMatch(
+        final CharSequence contents,
+        final ActivationProperty property,
+        final ProfileActivationContext context,
+        final ModelProblemCollector problems
+    ) throws IOException
+    {
+        return null;
+    }
 }
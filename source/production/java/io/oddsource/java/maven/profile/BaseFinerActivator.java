@@ -16,8 +16,18 @@
 
 package io.oddsource.java.maven.profile;
 
+import org.apache.maven.model.building.ModelProblemCollector;
+
 abstract class BaseFinerActivator implements FinerActivator
 {
+    /**
+     * The collector of problems while prefetching, which discards them; problems that must be reported once per
+     * session are not considered reported when they are added to it.
+     */
+    static final ModelProblemCollector PREFETCH_PROBLEMS = request -> {
+        // ignored
+    };
+
     @Override
     public String toString()
     {
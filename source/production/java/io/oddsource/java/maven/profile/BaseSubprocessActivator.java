@@ -17,6 +17,8 @@
 package io.oddsource.java.maven.profile;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -24,7 +26,10 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 import org.apache.maven.model.ActivationProperty;
@@ -40,23 +45,57 @@ import org.codehaus.plexus.logging.Logger;
  * @since 1.0.0
  */
 public abstract class BaseSubprocessActivator extends BaseFinerActivator
+    implements UserPropertiesHelperMixin
 {
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
 
-    private static final long TIMEOUT = 30;
+    private static final long DEFAULT_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private static final int DEFAULT_OUTPUT_LIMIT = 1024 * 1024;
+
+    private static final String STREAMING = "finer.activator.subprocess.streaming";
+
+    private static final String OUTPUT_LIMIT = "finer.activator.subprocess.maxOutput";
+
+    private static final String ERROR_OUTPUT = "finer.activator.subprocess.stderr";
+
+    private static final String TIMEOUT = "finer.activator.subprocess.timeout";
+
+    private static final String COPROCESS = "finer.activator.subprocess.coprocess";
+
+    private static final String BUILTINS = "finer.activator.subprocess.builtins";
+
+    private static final String CACHE = "finer.activator.subprocess.cache";
+
+    private static final String CACHE_CLEAR = "finer.activator.subprocess.cache.clear";
+
+    private static final String CACHE_DIRECTORY = "finer.activator.subprocess.cache.directory";
+
+    private static final File DEFAULT_CACHE_DIRECTORY = new File(
+        System.getProperty("user.home"),
+        ".m2" + File.separator + "finer-profile-activation"
+    );
+
+    private static final File NULL_FILE = new File(
+        System.getProperty("os.name").startsWith("Windows") ? "NUL" : "/dev/null"
+    );
 
     private static final String PRELUDE = "The command named by the property 'name' (`";
 
     private final Logger logger;
 
+    private final ActivationSession session;
+
     /**
      * Construct a BaseSubprocessActivator.
      *
      * @param logger A Maven logger, auto-injected by Maven
+     * @param session The activation session, auto-injected by Maven
      */
-    protected BaseSubprocessActivator(final Logger logger)
+    protected BaseSubprocessActivator(final Logger logger, final ActivationSession session)
     {
         this.logger = logger;
+        this.session = session;
     }
 
     @Override
@@ -68,97 +107,764 @@ public abstract class BaseSubprocessActivator extends BaseFinerActivator
         final ModelProblemCollector problems
     )
     {
-        final Utilities.CharsetAndRemainder helper = new Utilities.CharsetAndRemainder(
+        final ParsedName name = this.session.getParsedCommand(
             unparsedCommandString,
-            BaseSubprocessActivator.DEFAULT_CHARSET,
+            BaseSubprocessActivator.DEFAULT_CHARSET
+        );
+        final long timeout = this.getTimeout(name, context, property, problems);
+        if(timeout < 0)
+        {
+            return false;
+        }
+
+        if(name.getProblem() != null)
+        {
+            Utilities.problem(problems, property, name.getProblem());
+        }
+        final Charset charset = name.getCharset();
+        final List<String> arguments = name.getArguments();
+        if(charset == null || arguments == null)
+        {
+            this.logger.debug("BaseSubprocessActivator: charset == null || commandString == null");
+            return false;
+        }
+
+        final String errorOutputValue = this.getUserOrSystemProperty(BaseSubprocessActivator.ERROR_OUTPUT, context);
+        final ErrorOutput errorOutput = ErrorOutput.parse(errorOutputValue);
+        if(errorOutput == null)
+        {
+            return Utilities.problem(problems, property,
+                "The property '" + BaseSubprocessActivator.ERROR_OUTPUT + "' ('" + errorOutputValue +
+                "') must be one of 'merge', 'separate', or 'discard'."
+            );
+        }
+        final int outputLimit = this.getNumber(
+            BaseSubprocessActivator.OUTPUT_LIMIT,
+            BaseSubprocessActivator.DEFAULT_OUTPUT_LIMIT,
+            0,
+            "a non-negative number of bytes",
+            context,
             property,
             problems
         );
-        final Charset charset = helper.getCharset();
-        final String commandString = helper.getRemainder();
-        if(charset == null || commandString == null)
+        final boolean configured = this.session.getSubprocessScheduler().configure(context, property, problems);
+        final long cacheTimeToLive = this.getCacheTimeToLive(context, property, problems);
+        if(outputLimit < 0 || !configured || cacheTimeToLive < 0)
         {
-            this.logger.debug("BaseSubprocessActivator: charset == null || commandString == null");
             return false;
         }
 
-        return this.executedAndTestProcess(Utilities.tokenize(commandString), charset, property, problems);
+        final SubprocessCommand command = this.resolveCommand(
+            new SubprocessCommand(arguments, charset, errorOutput, outputLimit, timeout)
+        );
+        return command != null && this.executedAndTestProcess(
+            command,
+            cacheTimeToLive,
+            property,
+            context,
+            problems
+        );
     }
 
-    @SuppressWarnings("checkstyle:ReturnCount")
+    @Override
+    public void prefetch(
+        final String unparsedCommandString,
+        final ActivationProperty property,
+        final ProfileActivationContext context
+    )
+    {
+        // evaluating the property leaves the result of the command in the session; problems are reported later
+        this.isActive(unparsedCommandString, property, null, context, BaseFinerActivator.PREFETCH_PROBLEMS);
+    }
+
+    private long getTimeout(
+        final ParsedName name,
+        final ProfileActivationContext context,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        final String prefixValue = name.getTimeoutValue();
+        final String value = prefixValue != null ?
+            prefixValue :
+            this.getUserOrSystemProperty(BaseSubprocessActivator.TIMEOUT, context);
+        if(value == null || value.isEmpty() && prefixValue == null)
+        {
+            return BaseSubprocessActivator.DEFAULT_TIMEOUT;
+        }
+        final long timeout = prefixValue != null ? name.getTimeout() : Utilities.parseDuration(value);
+        if(timeout < 0)
+        {
+            final String source = prefixValue != null ?
+                "The timeout from the property 'name'" :
+                "The property '" + BaseSubprocessActivator.TIMEOUT + "'";
+            Utilities.problem(problems, property,
+                source + " ('" + value + "') must be a positive duration, such as '500ms', '5s', or '2m'."
+            );
+        }
+        return timeout;
+    }
+
+    /**
+     * Get how long results are kept in the persistent cache.
+     *
+     * @return the time to live in nanoseconds, {@code 0} if the cache is disabled, or {@code -1} if the property is
+     *     invalid.
+     */
+    private long getCacheTimeToLive(
+        final ProfileActivationContext context,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        final String value = this.getUserOrSystemProperty(BaseSubprocessActivator.CACHE, context);
+        if(value == null || value.isEmpty() || "false".equalsIgnoreCase(value))
+        {
+            return 0;
+        }
+        final long timeToLive = Utilities.parseDuration(value);
+        if(timeToLive < 0)
+        {
+            Utilities.problem(problems, property,
+                "The property '" + BaseSubprocessActivator.CACHE + "' ('" + value +
+                "') must be a positive duration, such as '30s', '10m', or '2h', or 'false'."
+            );
+        }
+        return timeToLive;
+    }
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private int getNumber(
+        final String name,
+        final int defaultValue,
+        final int minimum,
+        final String description,
+        final ProfileActivationContext context,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        final String value = this.getUserOrSystemProperty(name, context);
+        if(value == null || value.isEmpty())
+        {
+            return defaultValue;
+        }
+        try
+        {
+            final int number = Integer.parseInt(value);
+            if(number >= minimum)
+            {
+                return number;
+            }
+        }
+        catch(final NumberFormatException e)
+        {
+            // reported below
+        }
+        Utilities.problem(problems, property,
+            "The property '" + name + "' ('" + value + "') must be " + description + "."
+        );
+        return -1;
+    }
+
+    @SuppressWarnings("checkstyle:CyclomaticComplexity")
     private boolean executedAndTestProcess(
-        final List<String> command,
-        final Charset charset,
+        final SubprocessCommand command,
+        final long cacheTimeToLive,
+        final ActivationProperty property,
+        final ProfileActivationContext context,
+        final ModelProblemCollector problems
+    )
+    {
+        SubprocessResult result = this.getSessionResult(command);
+        if(result == null &&
+           !"false".equalsIgnoreCase(this.getUserOrSystemProperty(BaseSubprocessActivator.BUILTINS, context)))
+        {
+            result = this.evaluateBuiltin(command, property, problems);
+        }
+        final SubprocessResultStore store = this.getResultStore(context, cacheTimeToLive);
+        if(result == null && store != null)
+        {
+            result = store.get(command, this.needsOutput(), cacheTimeToLive);
+            if(result != null)
+            {
+                this.logger.debug("BaseSubprocessActivator: re-using cached result of command " + command);
+                this.session.putSubprocessResult(command, result);
+            }
+        }
+        if(result == null)
+        {
+            // the command may take at most what is left of the activation budget
+            final long remaining = this.session.getActivationBudget().remaining(context, property, problems);
+            if(remaining < 0)
+            {
+                return false;
+            }
+            final SubprocessCommand limited = command.withTimeout(Math.min(command.getTimeout(), remaining));
+            if(this.session.getSubprocessFailure(limited) != null)
+            {
+                return this.reportFailure(limited, property, problems);
+            }
+            if(Boolean.parseBoolean(this.getUserOrSystemProperty(BaseSubprocessActivator.STREAMING, context)))
+            {
+                final LineMatcher matcher = this.newLineMatcher(property);
+                if(matcher != null)
+                {
+                    return this.streamAndTestProcess(limited, matcher, property, problems);
+                }
+            }
+
+            // concurrent evaluations of the same command wait for a single execution
+            final boolean shell = Boolean.parseBoolean(
+                this.getUserOrSystemProperty(BaseSubprocessActivator.COPROCESS, context)
+            );
+            final List<Object> key = Arrays.asList(limited, this.needsOutput());
+            result = this.session.getSubprocessExecutions().execute(key, problems, flightProblems -> {
+                final SubprocessResult completed = this.getSessionResult(limited);
+                if(completed != null || this.session.getSubprocessFailure(limited) != null)
+                {
+                    return completed;
+                }
+                final SubprocessResult executed = this.needsOutput() ?
+                    this.execute(limited, shell, property, flightProblems) :
+                    this.executeForExitCode(limited, shell, property, flightProblems);
+                if(executed != null)
+                {
+                    this.session.putSubprocessResult(limited, executed);
+                    if(store != null)
+                    {
+                        this.storeResult(store, limited, executed, cacheTimeToLive);
+                    }
+                }
+                return executed;
+            });
+            if(result == null)
+            {
+                return this.reportFailure(limited, property, problems);
+            }
+        }
+
+        return this.processResultMatches(result.getExitCode(), result.getOutput(), property, problems);
+    }
+
+    /**
+     * Report that a command failed, once per session, since every evaluation of the command fails the same way.
+     */
+    private boolean reportFailure(
+        final SubprocessCommand command,
         final ActivationProperty property,
         final ModelProblemCollector problems
     )
+    {
+        final SubprocessFailure failure = this.session.getSubprocessFailure(command);
+        if(failure == null)
+        {
+            // interrupted, which has been reported already
+            return false;
+        }
+        // a failure while prefetching is reported by the first evaluation that has somewhere to report it
+        if(problems != BaseFinerActivator.PREFETCH_PROBLEMS && failure.claimReport())
+        {
+            return Utilities.problem(problems, property, failure.getMessage());
+        }
+        this.logger.debug("BaseSubprocessActivator: " + failure.getMessage() + " (already reported)");
+        return false;
+    }
+
+    private SubprocessResult getSessionResult(final SubprocessCommand command)
+    {
+        final SubprocessResult result = this.session.getSubprocessResult(command);
+        if(result != null && (result.hasOutput() || !this.needsOutput()))
+        {
+            this.logger.debug("BaseSubprocessActivator: re-using session result of command " + command);
+            return result;
+        }
+        return null;
+    }
+
+    private SubprocessResultStore getResultStore(final ProfileActivationContext context, final long timeToLive)
+    {
+        final boolean clear =
+            Boolean.parseBoolean(this.getUserOrSystemProperty(BaseSubprocessActivator.CACHE_CLEAR, context));
+        if(timeToLive <= 0 && !clear)
+        {
+            return null;
+        }
+        final String directory = this.getUserOrSystemProperty(BaseSubprocessActivator.CACHE_DIRECTORY, context);
+        final SubprocessResultStore store = this.session.getSubprocessResultStore(
+            (directory == null || directory.isEmpty() ?
+                BaseSubprocessActivator.DEFAULT_CACHE_DIRECTORY :
+                new File(directory)).getAbsoluteFile().toPath(),
+            clear,
+            timeToLive
+        );
+        // the stored results are deleted (once per session) even if the cache is off, but then nothing is stored
+        return timeToLive > 0 ? store : null;
+    }
+
+    private void storeResult(
+        final SubprocessResultStore store,
+        final SubprocessCommand command,
+        final SubprocessResult result,
+        final long timeToLive
+    )
     {
         try
         {
-            final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
-            if(!process.waitFor(BaseSubprocessActivator.TIMEOUT, TimeUnit.SECONDS))
+            store.put(command, result, timeToLive);
+        }
+        catch(final IOException e)
+        {
+            // the result is still cached for the session
+            this.logger.debug("BaseSubprocessActivator: could not cache result of command " + command + ": " + e);
+        }
+    }
+
+    private SubprocessResult evaluateBuiltin(
+        final SubprocessCommand command,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        final CompletedCommand completed = SubprocessBuiltins.evaluate(command, this.session.getPathIndex());
+        if(completed == null)
+        {
+            return null;
+        }
+        this.logger.debug("BaseSubprocessActivator: answered command " + command + " without executing it.");
+        final SubprocessResult result;
+        try
+        {
+            result = this.needsOutput() ?
+                this.toResult(command, completed.getExitCode(), completed.getOutput(), property, problems) :
+                new SubprocessResult(completed.getExitCode(), null);
+        }
+        catch(final IOException e)
+        {
+            // the command is executed instead, which reports the problem
+            return null;
+        }
+        this.session.putSubprocessResult(command, result);
+        return result;
+    }
+
+    private boolean streamAndTestProcess(
+        final SubprocessCommand command,
+        final LineMatcher matcher,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        final List<Object> key = Arrays.asList(command, this.getSupportedActivatorBracketName(), property.getValue());
+        final Boolean matched = this.session.getSubprocessStreams().execute(key, problems, flightProblems -> {
+            final Boolean completed = this.session.getStreamedMatch(key);
+            if(completed == null && this.session.getSubprocessFailure(command) != null)
+            {
+                return null;
+            }
+            if(completed != null)
+            {
+                this.logger.debug("BaseSubprocessActivator: re-using session streamed match of command " + command);
+                return completed;
+            }
+            final Boolean streamed = this.stream(command, matcher, property, flightProblems);
+            if(streamed != null)
+            {
+                this.session.putStreamedMatch(key, streamed);
+            }
+            return streamed;
+        });
+        return matched == null ? this.reportFailure(command, property, problems) : matched;
+    }
+
+    private Boolean stream(
+        final SubprocessCommand command,
+        final LineMatcher matcher,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        return this.run(command, false, null, property, problems, (process, deadline) -> {
+            final Future<Boolean> streamed = StreamDrainer.match(
+                process.getInputStream(),
+                command.getCharset(),
+                matcher
+            );
+            try
+            {
+                if(streamed.get(BaseSubprocessActivator.remaining(deadline), TimeUnit.NANOSECONDS))
+                {
+                    this.logger.debug("BaseSubprocessActivator: streamed output of command " + command + " matched.");
+                    return true;
+                }
+                if(!process.waitFor(BaseSubprocessActivator.remaining(deadline), TimeUnit.NANOSECONDS))
+                {
+                    throw new TimeoutException();
+                }
+                return false;
+            }
+            finally
+            {
+                streamed.cancel(true);
+            }
+        });
+    }
+
+    private SubprocessResult execute(
+        final SubprocessCommand command,
+        final boolean shell,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        final ShellStage<SubprocessResult> inShell = shell ?
+            completed -> this.toResult(command, completed.getExitCode(), completed.getOutput(), property, problems) :
+            null;
+        return this.run(command, false, inShell, property, problems, (process, deadline) -> {
+            final Future<StreamDrainer.Captured> drained = StreamDrainer.drain(
+                process.getInputStream(),
+                command.getOutputLimit()
+            );
+            try
             {
-                return Utilities.problem(problems, property,
-                    BaseSubprocessActivator.PRELUDE + Arrays.toString(command.toArray()) +
-                    "`) timed out after " + BaseSubprocessActivator.TIMEOUT + " seconds."
+                if(!process.waitFor(BaseSubprocessActivator.remaining(deadline), TimeUnit.NANOSECONDS))
+                {
+                    throw new TimeoutException();
+                }
+                // if the process has exited but this times out, something it started is still holding its output open
+                final StreamDrainer.Captured captured = drained.get(
+                    BaseSubprocessActivator.remaining(deadline),
+                    TimeUnit.NANOSECONDS
                 );
+                return this.toResult(command, process.exitValue(), captured, property, problems);
             }
-            try(
-                InputStream input = process.getInputStream();
-                InputStreamReader reader = new InputStreamReader(input, charset);
-                BufferedReader buffer = new BufferedReader(reader)
-            )
+            finally
             {
-                final String output = buffer.lines().collect(Collectors.joining("\n"));
-                this.logOutput(command, output);
-                return this.processResultMatches(process.exitValue(), output, property, problems);
+                drained.cancel(true);
             }
+        });
+    }
+
+    private SubprocessResult toResult(
+        final SubprocessCommand command,
+        final int exitCode,
+        final StreamDrainer.Captured captured,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    ) throws IOException
+    {
+        if(captured.getDiscarded() > 0)
+        {
+            Utilities.warning(problems, property,
+                BaseSubprocessActivator.PRELUDE + command + "`) produced more than " +
+                command.getOutputLimit() + " bytes of output; the remaining " + captured.getDiscarded() +
+                " bytes were discarded. Raise '" + BaseSubprocessActivator.OUTPUT_LIMIT +
+                "' if the activator needs to see them."
+            );
+        }
+        final String output = BaseSubprocessActivator.decode(captured.getBytes(), command.getCharset());
+        this.logOutput(command, output);
+        return new SubprocessResult(exitCode, output);
+    }
+
+    private SubprocessResult executeForExitCode(
+        final SubprocessCommand command,
+        final boolean shell,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        final ShellStage<SubprocessResult> inShell = shell ?
+            completed -> new SubprocessResult(completed.getExitCode(), null) :
+            null;
+        return this.run(command, true, inShell, property, problems, (process, deadline) -> {
+            if(!process.waitFor(BaseSubprocessActivator.remaining(deadline), TimeUnit.NANOSECONDS))
+            {
+                throw new TimeoutException();
+            }
+            this.logger.debug("BaseSubprocessActivator: command " + command + " exited with " + process.exitValue());
+            return new SubprocessResult(process.exitValue(), null);
+        });
+    }
+
+    @SuppressWarnings("checkstyle:ReturnCount")
+    private <T> T run(
+        final SubprocessCommand command,
+        final boolean discardOutput,
+        final ShellStage<T> inShell,
+        final ActivationProperty property,
+        final ModelProblemCollector problems,
+        final Stage<T> stage
+    )
+    {
+        final SubprocessScheduler scheduler = this.session.getSubprocessScheduler();
+        try
+        {
+            // the timeout applies to the process, so it starts once the process is allowed to start
+            scheduler.acquire();
+        }
+        catch(final InterruptedException e)
+        {
+            // the build is being cancelled, which must reach whoever interrupted this thread
+            Thread.currentThread().interrupt();
+            this.problem(problems, property, command, "was interrupted.");
+            return null;
+        }
+        final long start = System.nanoTime();
+        try
+        {
+            final long deadline = System.nanoTime() + command.getTimeout();
+            if(inShell != null)
+            {
+                final CompletedCommand completed = this.executeInShell(command, discardOutput, deadline);
+                if(completed != null)
+                {
+                    return inShell.complete(completed);
+                }
+            }
+            final Process process = BaseSubprocessActivator.newProcessBuilder(command, discardOutput).start();
+            ProcessRegistry.register(process);
+            final Future<StreamDrainer.Captured> errors =
+                !discardOutput && command.getErrorOutput() == ErrorOutput.SEPARATE ?
+                StreamDrainer.drain(process.getErrorStream(), command.getOutputLimit()) :
+                null;
+            try
+            {
+                final T result = stage.complete(process, deadline);
+                if(errors != null && !process.isAlive())
+                {
+                    this.logErrorOutput(command, errors, deadline);
+                }
+                return result;
+            }
+            catch(final TimeoutException e)
+            {
+                this.timedOut(command);
+            }
+            catch(final ExecutionException e)
+            {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+            }
+            finally
+            {
+                // including when interrupted, so that a cancelled build does not leave the process running
+                if(process.isAlive())
+                {
+                    ProcessTrees.destroyForcibly(process);
+                }
+                ProcessRegistry.unregister(process);
+                if(errors != null)
+                {
+                    errors.cancel(true);
+                }
+            }
+        }
+        catch(final TimeoutException e)
+        {
+            this.timedOut(command);
         }
         catch(final SecurityException e)
         {
-            return Utilities.problem(problems, property,
-                BaseSubprocessActivator.PRELUDE + Arrays.toString(command.toArray()) +
-                "`) could not be executed because it violates security constraints."
-            );
+            this.failed(command, "could not be executed because it violates security constraints.");
         }
         catch(final UnsupportedOperationException e)
         {
-            return Utilities.problem(problems, property,
-                BaseSubprocessActivator.PRELUDE + Arrays.toString(command.toArray()) +
-                "`) could not be executed because the operating system does not support process creation."
+            this.failed(command,
+                "could not be executed because the operating system does not support process creation."
             );
         }
         catch(final InterruptedException e)
         {
-            return Utilities.problem(problems, property,
-                BaseSubprocessActivator.PRELUDE + Arrays.toString(command.toArray()) + "`) was interrupted."
-            );
+            Thread.currentThread().interrupt();
+            this.problem(problems, property, command, "was interrupted.");
         }
         catch(final IOException e)
         {
-            return Utilities.problem(problems, property,
-                BaseSubprocessActivator.PRELUDE + Arrays.toString(command.toArray()) +
-                "`) could not be executed because an I/O error occurred: " + e
-            );
+            this.failed(command, "could not be executed because an I/O error occurred: " + e);
+        }
+        finally
+        {
+            scheduler.release();
+            this.session.getActivationBudget().consume("command " + command, System.nanoTime() - start);
+        }
+        return null;
+    }
+
+    private CompletedCommand executeInShell(
+        final SubprocessCommand command,
+        final boolean discardOutput,
+        final long deadline
+    ) throws InterruptedException, TimeoutException
+    {
+        final ShellCoprocess shell = this.session.getShellCoprocess(BaseSubprocessActivator.NULL_FILE);
+        final CompletedCommand completed = shell == null ?
+            null :
+            shell.execute(command, discardOutput, deadline);
+        if(completed == null)
+        {
+            this.logger.debug("BaseSubprocessActivator: executing command " + command + " outside the shell.");
+        }
+        return completed;
+    }
+
+    private static ProcessBuilder newProcessBuilder(final SubprocessCommand command, final boolean discardOutput)
+    {
+        final ProcessBuilder builder = new ProcessBuilder(command.getArguments())
+            .directory(command.getDirectory())
+            // a process that reads its input gets an immediate end-of-file instead of waiting until the timeout
+            .redirectInput(ProcessBuilder.Redirect.from(BaseSubprocessActivator.NULL_FILE));
+        if(discardOutput)
+        {
+            // the operating system throws the output away, so there is nothing to read, buffer, or decode
+            return builder
+                .redirectOutput(ProcessBuilder.Redirect.to(BaseSubprocessActivator.NULL_FILE))
+                .redirectError(ProcessBuilder.Redirect.to(BaseSubprocessActivator.NULL_FILE));
+        }
+        switch(command.getErrorOutput())
+        {
+            case DISCARD:
+                builder.redirectError(ProcessBuilder.Redirect.to(BaseSubprocessActivator.NULL_FILE));
+                break;
+            case SEPARATE:
+                // drained and logged separately
+                break;
+            default:
+                builder.redirectErrorStream(true);
+                break;
         }
+        return builder;
+    }
+
+    private static long remaining(final long deadline)
+    {
+        return deadline - System.nanoTime();
+    }
+
+    private static String decode(final byte[] output, final Charset charset) throws IOException
+    {
+        try(
+            InputStream input = new ByteArrayInputStream(output);
+            InputStreamReader reader = new InputStreamReader(input, charset);
+            BufferedReader buffer = new BufferedReader(reader)
+        )
+        {
+            return buffer.lines().collect(Collectors.joining("\n"));
+        }
+    }
+
+    private void problem(
+        final ModelProblemCollector problems,
+        final ActivationProperty property,
+        final SubprocessCommand command,
+        final String message
+    )
+    {
+        Utilities.problem(problems, property, BaseSubprocessActivator.PRELUDE + command + "`) " + message);
+    }
+
+    /**
+     * Remember the failure of a command for the session; it is reported once by {@link #reportFailure}.
+     */
+    private void failed(final SubprocessCommand command, final String message)
+    {
+        this.session.putSubprocessFailure(
+            command,
+            new SubprocessFailure(BaseSubprocessActivator.PRELUDE + command + "`) " + message, Long.MAX_VALUE)
+        );
+    }
+
+    private void timedOut(final SubprocessCommand command)
+    {
+        this.session.putSubprocessFailure(command, new SubprocessFailure(
+            BaseSubprocessActivator.PRELUDE + command + "`) timed out after " +
+            Utilities.formatDuration(command.getTimeout()) + ".",
+            command.getTimeout()
+        ));
     }
 
-    private void logOutput(final List<String> command, final String output)
+    private void logOutput(final SubprocessCommand command, final String output)
     {
         if(this.logger.isDebugEnabled())
+        {
+            this.logger.debug("BaseSubprocessActivator: output from command " + command + ": " + output);
+        }
+    }
+
+    private void logErrorOutput(
+        final SubprocessCommand command,
+        final Future<StreamDrainer.Captured> errors,
+        final long deadline
+    )
+    {
+        if(!this.logger.isDebugEnabled())
+        {
+            return;
+        }
+        // the command has completed, so its result stands even if the error output is late or cannot be read
+        try
+        {
+            final StreamDrainer.Captured captured =
+                errors.get(BaseSubprocessActivator.remaining(deadline), TimeUnit.NANOSECONDS);
+            this.logger.debug(
+                "BaseSubprocessActivator: error output from command " + command + ": " +
+                BaseSubprocessActivator.decode(captured.getBytes(), command.getCharset())
+            );
+        }
+        catch(final TimeoutException | ExecutionException | IOException e)
         {
             this.logger.debug(
-                "BaseSubprocessActivator: output from command " + Arrays.toString(command.toArray()) +
-                ": " + output
+                "BaseSubprocessActivator: error output from command " + command + " could not be read: " + e
             );
         }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Indicates whether this activator looks at the output of the process. Activators that only test the exit code
+     * return {@code false}, and the process output is then discarded by the operating system instead of being read
+     * and decoded.
+     *
+     * @return whether {@link #processResultMatches} needs the process output.
+     */
+    boolean needsOutput()
+    {
+        return true;
+    }
+
+    /**
+     * Gives the activator a chance to change the command before its result is looked up or it is executed.
+     *
+     * @param command The command named by the property
+     * @return the command to execute, or {@code null} if the property is inactive without executing anything.
+     */
+    SubprocessCommand resolveCommand(final SubprocessCommand command)
+    {
+        return command;
+    }
+
+    /**
+     * Creates a matcher that decides the result while the process is still producing output, so that the process can
+     * be stopped as soon as a match is found. Only used when streaming is enabled with the
+     * {@code finer.activator.subprocess.streaming} property.
+     *
+     * @param property The property
+     * @return the matcher, or {@code null} if this activator needs the complete exit code and output.
+     */
+    LineMatcher newLineMatcher(final ActivationProperty property)
+    {
+        return null;
     }
 
     /**
      * Tests the process exit code and/or output in the manner specified by the concrete class.
      *
      * @param exitCode The process exit code
-     * @param output The process standard and error output, combined
+     * @param output The process standard output, combined with its error output unless the
+     *               {@code finer.activator.subprocess.stderr} property says otherwise, or {@code null} if
+     *               this activator only tests the exit code
      * @param property The property
      * @param problems A collector of problems
      * @return whether the check succeeded.
@@ -169,4 +875,28 @@ public abstract class BaseSubprocessActivator extends BaseFinerActivator
         ActivationProperty property,
         ModelProblemCollector problems
     );
+
+    /**
+     * What to do with a started process, given the deadline (in {@link System#nanoTime()} terms) by which it must
+     * complete.
+     *
+     * @param <T> The type of the stage result
+     */
+    @FunctionalInterface
+    private interface Stage<T>
+    {
+        T complete(Process process, long deadline)
+            throws IOException, InterruptedException, TimeoutException, ExecutionException;
+    }
+
+    /**
+     * What to do with a command that completed in the shell coprocess.
+     *
+     * @param <T> The type of the stage result
+     */
+    @FunctionalInterface
+    private interface ShellStage<T>
+    {
+        T complete(CompletedCommand completed) throws IOException;
+    }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.util.Locale;
+
+/**
+ * What happens to finer activations once the activation budget is exhausted, as configured with the
+ * {@code finer.activator.budget.policy} property.
+ */
+enum BudgetPolicy
+{
+    /**
+     * The remaining activations are treated as inactive, and a warning is reported (the default).
+     */
+    INACTIVE,
+
+    /**
+     * The remaining activations are treated as inactive, and an error is reported, which fails the build.
+     */
+    FAIL;
+
+    /**
+     * Parse a property value into a budget policy.
+     *
+     * @param value The property value, case-insensitive, or {@code null}
+     * @return the policy, {@link #INACTIVE} if the value is {@code null} or empty, or {@code null} if the value is
+     *     invalid.
+     */
+    static BudgetPolicy parse(final String value)
+    {
+        if(value == null || value.isEmpty())
+        {
+            return BudgetPolicy.INACTIVE;
+        }
+        for(final BudgetPolicy policy : BudgetPolicy.values())
+        {
+            if(policy.name().equals(value.toUpperCase(Locale.US)))
+            {
+                return policy;
+            }
+        }
+        return null;
+    }
+}
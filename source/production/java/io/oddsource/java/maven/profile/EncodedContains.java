@@ -0,0 +1,363 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Searches the contents of a file for a string without decoding them, by encoding the string once and searching the
+ * bytes with the Boyer-Moore-Horspool algorithm. This is only possible if the decoded contents contain the string
+ * exactly where the bytes contain the encoded string, which is true of UTF-8 (whose characters never begin in the
+ * middle of another character) and of single-byte charsets whose bytes decode to distinct characters, such as
+ * ISO-8859-1 and US-ASCII, as long as the string does not contain the replacement character, which malformed or
+ * unmappable bytes decode to. For other charsets, such as UTF-16 or stateful charsets, {@link #of} returns
+ * {@code null}, and the contents must be decoded instead.
+ */
+final class EncodedContains
+{
+    private static final int BYTE_VALUES = 256;
+
+    // the character each byte decodes to, for single-byte charsets whose bytes decode to distinct characters
+    private static final Map<Charset, char[]> SINGLE_BYTE_TABLES = new ConcurrentHashMap<>();
+
+    private static final char[] NOT_SINGLE_BYTE = new char[0];
+
+    private static final long LOW_BITS = 0x0101010101010101L;
+
+    private static final long LOW_SEVEN_BITS = 0x7F7F7F7F7F7F7F7FL;
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    // the filter compares fewer positions, but Boyer-Moore-Horspool skips further ahead once the string is this long,
+    // which is much sooner before Java 9, which reads a long from a byte array a byte at a time
+    private static final int HORSPOOL_THRESHOLD =
+        System.getProperty("java.specification.version", "").startsWith("1.") ? 4 : 32;
+
+    // each thread keeps one buffer, with room for the end of the previous chunk
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(
+        () -> new byte[2 * StreamingContains.CHUNK_SIZE]
+    );
+
+    private final byte[] needle;
+
+    private final int[] shifts;
+
+    private EncodedContains(final byte[] needle)
+    {
+        this.needle = needle;
+        this.shifts = new int[EncodedContains.BYTE_VALUES];
+        Arrays.fill(this.shifts, needle.length);
+        for(int i = 0; i < needle.length - 1; i++)
+        {
+            this.shifts[needle[i] & 0xFF] = needle.length - 1 - i;
+        }
+    }
+
+    /**
+     * Encode a string for searching contents in the given charset without decoding them.
+     *
+     * @param charset The charset of the contents
+     * @param needle The string, which must not be empty
+     * @return the search, or {@code null} if the contents must be decoded to search them for the string.
+     */
+    static EncodedContains of(final Charset charset, final String needle)
+    {
+        if(needle.indexOf('\uFFFD') >= 0)
+        {
+            return null;
+        }
+        if(StandardCharsets.UTF_8.equals(charset))
+        {
+            // a string that cannot be encoded (a lone surrogate) could only match half of a decoded character
+            final byte[] encoded = EncodedContains.encode(charset, needle);
+            return encoded == null ? null : new EncodedContains(encoded);
+        }
+        final char[] table = EncodedContains.SINGLE_BYTE_TABLES.computeIfAbsent(
+            charset,
+            EncodedContains::singleByteTable
+        );
+        if(table == EncodedContains.NOT_SINGLE_BYTE)
+        {
+            return null;
+        }
+        final byte[] encoded = new byte[needle.length()];
+        for(int i = 0; i < needle.length(); i++)
+        {
+            final int b = EncodedContains.indexOf(table, needle.charAt(i));
+            if(b < 0)
+            {
+                // no byte decodes to this character, which is rare enough to leave to decoding
+                return null;
+            }
+            encoded[i] = (byte) b;
+        }
+        return new EncodedContains(encoded);
+    }
+
+    private static byte[] encode(final Charset charset, final String needle)
+    {
+        final CharsetEncoder encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPORT)
+            .onUnmappableCharacter(CodingErrorAction.REPORT);
+        try
+        {
+            final ByteBuffer buffer = encoder.encode(CharBuffer.wrap(needle));
+            return Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.limit());
+        }
+        catch(final CharacterCodingException e)
+        {
+            return null;
+        }
+    }
+
+    private static char[] singleByteTable(final Charset charset)
+    {
+        if(!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f ||
+           charset.newDecoder().maxCharsPerByte() != 1.0f)
+        {
+            return EncodedContains.NOT_SINGLE_BYTE;
+        }
+        final byte[] bytes = new byte[EncodedContains.BYTE_VALUES];
+        for(int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte) i;
+        }
+        final String decoded = new String(bytes, charset);
+        if(decoded.length() != bytes.length)
+        {
+            return EncodedContains.NOT_SINGLE_BYTE;
+        }
+        final char[] table = decoded.toCharArray();
+        for(int i = 0; i < table.length; i++)
+        {
+            // each byte must decode on its own, as it does in the middle of the contents, to a distinct character
+            final String alone = new String(bytes, i, 1, charset);
+            if(alone.length() != 1 || alone.charAt(0) != table[i] ||
+               table[i] != '\uFFFD' && EncodedContains.indexOf(table, table[i]) != i)
+            {
+                return EncodedContains.NOT_SINGLE_BYTE;
+            }
+        }
+        return table;
+    }
+
+    private static int indexOf(final char[] table, final char c)
+    {
+        for(int i = 0; i < table.length; i++)
+        {
+            if(table[i] == c)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Search the contents of a channel.
+     *
+     * @param channel The channel, which is read to the end unless the string is found
+     * @return whether the contents contain the string.
+     * @throws IOException if the channel could not be read
+     */
+    boolean contains(final ReadableByteChannel channel) throws IOException
+    {
+        final byte[] buffer = this.buffer();
+        final ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+        int kept = 0;
+        while(true)
+        {
+            wrapper.limit(buffer.length).position(kept);
+            final int read = channel.read(wrapper);
+            if(read < 0)
+            {
+                return false;
+            }
+            final int end = kept + read;
+            if(this.indexOf(buffer, 0, end) >= 0)
+            {
+                return true;
+            }
+            // the beginning of an occurrence that ends in the next chunk
+            kept = Math.min(this.needle.length - 1, end);
+            System.arraycopy(buffer, end - kept, buffer, 0, kept);
+        }
+    }
+
+    /**
+     * Search a region of a file for an occurrence that begins in it, which may end after it.
+     *
+     * @param channel The file, which is read with absolute positions, so that regions can be searched concurrently
+     * @param start The beginning of the region
+     * @param end The end of the region
+     * @param stopped Indicates whether to give up the search
+     * @return whether an occurrence begins in the region.
+     * @throws IOException if the file could not be read
+     */
+    boolean contains(final FileChannel channel, final long start, final long end, final BooleanSupplier stopped)
+        throws IOException
+    {
+        final long limit = Math.min(channel.size(), end + this.needle.length - 1);
+        final byte[] buffer = this.buffer();
+        final ByteBuffer wrapper = ByteBuffer.wrap(buffer);
+        long position = start;
+        int kept = 0;
+        while(position < limit && !stopped.getAsBoolean())
+        {
+            wrapper.limit((int) Math.min(buffer.length, kept + limit - position)).position(kept);
+            final int read = channel.read(wrapper, position);
+            if(read < 0)
+            {
+                return false;
+            }
+            position += read;
+            final int filled = kept + read;
+            if(this.indexOf(buffer, 0, filled) >= 0)
+            {
+                return true;
+            }
+            kept = Math.min(this.needle.length - 1, filled);
+            System.arraycopy(buffer, filled - kept, buffer, 0, kept);
+        }
+        return false;
+    }
+
+    private byte[] buffer()
+    {
+        return this.needle.length <= StreamingContains.CHUNK_SIZE ?
+            EncodedContains.BUFFERS.get() :
+            new byte[StreamingContains.CHUNK_SIZE + this.needle.length];
+    }
+
+    /**
+     * Search part of an array.
+     *
+     * @param haystack The array
+     * @param from The index from which to search
+     * @param to The index before which an occurrence must end
+     * @return the index of the first occurrence, or {@code -1} if there is none.
+     */
+    int indexOf(final byte[] haystack, final int from, final int to)
+    {
+        if(this.needle.length < EncodedContains.HORSPOOL_THRESHOLD)
+        {
+            return this.filteredIndexOf(haystack, from, to);
+        }
+        return this.horspoolIndexOf(haystack, from, to);
+    }
+
+    /**
+     * Search with the first and last byte filter, eight positions at a time: a position is only compared with the
+     * whole string if both the byte at it equals the first byte of the string and the byte that would end an
+     * occurrence there equals the last byte. This is what vector instructions would do sixteen or more positions at a
+     * time, with the bytes of a {@code long} as the lanes, which works on any JVM.
+     *
+     * @param haystack The array
+     * @param from The index from which to search
+     * @param to The index before which an occurrence must end
+     * @return the index of the first occurrence, or {@code -1} if there is none.
+     */
+    int filteredIndexOf(final byte[] haystack, final int from, final int to)
+    {
+        final int last = this.needle.length - 1;
+        final long firsts = EncodedContains.broadcast(this.needle[0]);
+        final long lasts = EncodedContains.broadcast(this.needle[last]);
+        final ByteBuffer longs = ByteBuffer.wrap(haystack).order(ByteOrder.LITTLE_ENDIAN);
+        int i = from;
+        for(; i + last + Long.BYTES <= to; i += Long.BYTES)
+        {
+            // a zero byte where both the first and last bytes match
+            final long mismatches = (longs.getLong(i) ^ firsts) | (longs.getLong(i + last) ^ lasts);
+            // the high bit of each zero byte, and of no other byte: unlike subtracting one from each byte, adding 0x7F
+            // to the low seven bits of each byte cannot carry into the next byte
+            long candidates = ~(((mismatches & EncodedContains.LOW_SEVEN_BITS) + EncodedContains.LOW_SEVEN_BITS) |
+                                mismatches | EncodedContains.LOW_SEVEN_BITS);
+            while(candidates != 0)
+            {
+                final int candidate = i + (Long.numberOfTrailingZeros(candidates) >>> 3);
+                if(EncodedContains.regionMatches(haystack, candidate + 1, this.needle, 1, last - 1))
+                {
+                    return candidate;
+                }
+                candidates &= candidates - 1;
+            }
+        }
+        return this.horspoolIndexOf(haystack, i, to);
+    }
+
+    /**
+     * Search with the Boyer-Moore-Horspool algorithm, which skips ahead by up to the length of the string.
+     *
+     * @param haystack The array
+     * @param from The index from which to search
+     * @param to The index before which an occurrence must end
+     * @return the index of the first occurrence, or {@code -1} if there is none.
+     */
+    int horspoolIndexOf(final byte[] haystack, final int from, final int to)
+    {
+        final int last = this.needle.length - 1;
+        final byte lastByte = this.needle[last];
+        int i = from;
+        while(i <= to - this.needle.length)
+        {
+            final byte b = haystack[i + last];
+            if(b == lastByte && EncodedContains.regionMatches(haystack, i, this.needle, 0, last))
+            {
+                return i;
+            }
+            i += this.shifts[b & 0xFF];
+        }
+        return -1;
+    }
+
+    private static long broadcast(final byte b)
+    {
+        return (b & 0xFFL) * EncodedContains.LOW_BITS;
+    }
+
+    private static boolean regionMatches(
+        final byte[] haystack,
+        final int offset,
+        final byte[] needle,
+        final int needleOffset,
+        final int length
+    )
+    {
+        for(int j = 0; j < length; j++)
+        {
+            if(haystack[offset + j] != needle[needleOffset + j])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
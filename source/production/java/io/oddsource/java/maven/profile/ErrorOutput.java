@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.util.Locale;
+
+/**
+ * Where the error output of a subprocess goes, as configured with the {@code finer.activator.subprocess.stderr}
+ * property.
+ */
+enum ErrorOutput
+{
+    /**
+     * Error output is interleaved with standard output, and activators see both (the default).
+     */
+    MERGE,
+
+    /**
+     * Error output is captured separately and only logged, so activators see standard output only.
+     */
+    SEPARATE,
+
+    /**
+     * Error output is discarded by the operating system, so activators see standard output only.
+     */
+    DISCARD;
+
+    /**
+     * Parse a property value into an error output mode.
+     *
+     * @param value The property value, case-insensitive, or {@code null}
+     * @return the mode, {@link #MERGE} if the value is {@code null} or empty, or {@code null} if the value is invalid.
+     */
+    static ErrorOutput parse(final String value)
+    {
+        if(value == null || value.isEmpty())
+        {
+            return ErrorOutput.MERGE;
+        }
+        for(final ErrorOutput mode : ErrorOutput.values())
+        {
+            if(mode.name().equals(value.toUpperCase(Locale.US)))
+            {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
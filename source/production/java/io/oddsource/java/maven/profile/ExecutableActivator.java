@@ -0,0 +1,109 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.oddsource.java.maven.profile;
+
+import java.nio.file.Path;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.Profile;
+import org.apache.maven.model.building.ModelProblemCollector;
+import org.apache.maven.model.profile.ProfileActivationContext;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Tests whether the program named by the property name is installed, the way {@code command -v program} would, but
+ * without executing anything: the program is looked up in an index of the {@code PATH} directories, which is created
+ * once per session. A name containing a directory is a file, which must be executable. The property value is empty or
+ * {@code true} to test that the program is installed, or {@code false} to test that it is not.
+ *
+ * @since 1.0.0
+ */
+@Named("executableActivator")
+@Singleton
+public class ExecutableActivator extends BaseFinerActivator
+{
+    private static final String BRACKET_NAME = "EXECUTABLE";
+
+    private final Logger logger;
+
+    private final ActivationSession session;
+
+    /**
+     * Construct an ExecutableActivator.
+     *
+     * @param logger A Maven logger, auto-injected by Maven
+     * @param session The activation session, auto-injected by Maven
+     */
+    @Inject
+    public ExecutableActivator(final Logger logger, final ActivationSession session)
+    {
+        this.logger = logger;
+        this.session = session;
+    }
+
+    @Override
+    public String getSupportedActivatorBracketName()
+    {
+        return ExecutableActivator.BRACKET_NAME;
+    }
+
+    @Override
+    public boolean isActive(
+        final String name,
+        final ActivationProperty property,
+        final Profile profile,
+        final ProfileActivationContext context,
+        final ModelProblemCollector problems
+    )
+    {
+        final String value = property.getValue();
+        final boolean expected;
+        if(value == null || value.isEmpty() || "true".equalsIgnoreCase(value))
+        {
+            expected = true;
+        }
+        else if("false".equalsIgnoreCase(value))
+        {
+            expected = false;
+        }
+        else
+        {
+            return Utilities.problem(problems, property,
+                "The property 'value' ('" + value + "') must be 'true', 'false', or empty."
+            );
+        }
+        if(name.isEmpty())
+        {
+            return Utilities.problem(problems, property,
+                "The property 'name' must name a program, such as 'docker', or an executable file."
+            );
+        }
+
+        final Path executable = this.session.getPathIndex().resolve(name);
+        if(this.logger.isDebugEnabled())
+        {
+            this.logger.debug("ExecutableActivator: " + name + (
+                executable == null ? " not found" : " found at " + executable
+            ));
+        }
+        return (executable != null) == expected;
+    }
+}
@@ -16,6 +16,9 @@
 
 package io.oddsource.java.maven.profile;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -39,11 +42,12 @@ public class FileContainsActivator extends BaseFileContentsActivator implements
      * Construct a FileContainsActivator.
      *
      * @param logger A Maven logger, auto-injected by Maven
+     * @param session The activation session, auto-injected by Maven
      */
     @Inject
-    public FileContainsActivator(final Logger logger)
+    public FileContainsActivator(final Logger logger, final ActivationSession session)
     {
-        super(logger);
+        super(logger, session);
     }
 
     @Override
@@ -60,4 +64,36 @@ public class FileContainsActivator extends BaseFileContentsActivator implements
     {
         return this.match(contents, property);
     }
+
+    @Override
+    Boolean streamedContentsMatch(
+        final FileChannel channel,
+        final Charset charset,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    ) throws IOException
+    {
+        final String value = property.getValue();
+        if(value == null || value.isEmpty())
+        {
+            // whether the file is empty or not, which reading it tells
+            return null;
+        }
+        // the bytes are searched without decoding them if the charset allows it
+        final EncodedContains encoded = EncodedContains.of(charset, value);
+        if(encoded == null)
+        {
+            return StreamingContains.contains(channel, charset, value);
+        }
+        final long size = channel.size();
+        if(!ParallelScan.applies(size))
+        {
+            return encoded.contains(channel);
+        }
+        // each region is searched, reading past its end, for occurrences that begin in it, so it may end anywhere
+        return ParallelScan.anyMatches(
+            ParallelScan.split(size, position -> position),
+            (start, end, stopped) -> encoded.contains(channel, start, end, stopped)
+        );
+    }
 }
@@ -0,0 +1,273 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * The contents of the files read during the session, and the results of matching them, so that a file checked by
+ * many modules (such as {@code ../.tool-versions} or {@code /etc/os-release}) is read and matched once. Files are
+ * identified by their real path, so that different names of a file share it, and each evaluation compares the size,
+ * modification time, and file key of the file with those it had when it was read, so that a file that changed is read
+ * again. The least recently used files are forgotten when the cache holds more than its limit of bytes.
+ *
+ * <p>A persistent cache, for a JVM that runs many builds (such as the Maven daemon), outlives the session. It also
+ * watches the directories of the files it holds, if the file system can be watched promptly, and forgets a file as
+ * soon as it is reported to have changed, even if its size and modification time did not. What it holds is still only
+ * used after comparing the file with it, because a change may be reported after the next build has started.
+ */
+final class FileContentsCache
+{
+    /**
+     * The default limit of the memory used by the contents and results, in bytes.
+     */
+    static final long MAX_BYTES = 64L * 1024 * 1024;
+
+    // a rough size of an entry or a result, beyond the characters it holds
+    private static final int OVERHEAD = 64;
+
+    private final long maxBytes;
+
+    private final boolean persistent;
+
+    private final Map<List<Object>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final FileWatcher watcher;
+
+    private long bytes;
+
+    /**
+     * Construct a FileContentsCache.
+     *
+     * @param maxBytes The limit of the memory used by the contents and results, in bytes
+     * @param persistent Whether the cache outlives the session, and watches files
+     */
+    FileContentsCache(final long maxBytes, final boolean persistent)
+    {
+        this.maxBytes = maxBytes;
+        this.persistent = persistent;
+        this.watcher = persistent ? FileWatcher.start(this::changed, this::overflowed) : null;
+    }
+
+    /**
+     * Get the entry for the file as it is now, read in the given charset, replacing the entry for a previous version.
+     *
+     * @param file The file
+     * @param charset The charset of the file contents
+     * @return the entry, or {@code null} if the file could not be identified, in which case nothing is cached.
+     */
+    Entry get(final File file, final Charset charset)
+    {
+        final Path path;
+        final BasicFileAttributes attributes;
+        try
+        {
+            path = file.toPath().toRealPath();
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        }
+        catch(final IOException | InvalidPathException | SecurityException e)
+        {
+            return null;
+        }
+        final List<Object> key = Arrays.asList(path, charset);
+        synchronized(this)
+        {
+            final Entry entry = this.entries.get(key);
+            if(entry != null && entry.isVersion(attributes))
+            {
+                return entry;
+            }
+            if(entry != null)
+            {
+                this.forget(entry);
+            }
+            final Entry replacement = new Entry(path, attributes);
+            replacement.watch = this.watcher == null ? null : this.watcher.watch(path);
+            this.entries.put(key, replacement);
+            replacement.cached = true;
+            this.add(replacement, FileContentsCache.OVERHEAD);
+            return replacement;
+        }
+    }
+
+    /**
+     * Remember the contents of a file.
+     *
+     * @param entry The entry for the file
+     * @param contents The decoded contents
+     */
+    synchronized void putContents(final Entry entry, final String contents)
+    {
+        // contents that would take up much of the cache would soon be forgotten, along with everything else
+        if(entry.contents == null && 2L * contents.length() <= this.maxBytes / 4)
+        {
+            entry.contents = contents;
+            this.add(entry, 2L * contents.length());
+        }
+    }
+
+    /**
+     * Remember whether the contents of a file match an activation.
+     *
+     * @param entry The entry for the file
+     * @param activation The activation, such as the activator and the property value
+     * @param matched Whether the contents match
+     */
+    synchronized void putDecision(final Entry entry, final String activation, final boolean matched)
+    {
+        if(entry.decisions.put(activation, matched) == null)
+        {
+            this.add(entry, 2L * activation.length() + FileContentsCache.OVERHEAD);
+        }
+    }
+
+    /**
+     * Forget everything at the end of a session, unless the cache is persistent.
+     */
+    synchronized void reset()
+    {
+        if(!this.persistent)
+        {
+            this.entries.values().forEach(this::forget);
+            this.entries.clear();
+        }
+    }
+
+    private synchronized void changed(final Path file)
+    {
+        this.forgetIf(entry -> entry.path.equals(file));
+    }
+
+    private synchronized void overflowed(final Path directory)
+    {
+        this.forgetIf(entry -> directory.equals(entry.path.getParent()));
+    }
+
+    private void forgetIf(final Predicate<Entry> changed)
+    {
+        final List<Entry> forgotten = new ArrayList<>();
+        this.entries.values().removeIf(entry -> changed.test(entry) && forgotten.add(entry));
+        forgotten.forEach(this::forget);
+    }
+
+    private void add(final Entry entry, final long size)
+    {
+        // an entry that was forgotten while it was in use is not counted again
+        if(!entry.cached)
+        {
+            return;
+        }
+        entry.bytes += size;
+        this.bytes += size;
+        final Iterator<Entry> eldest = this.entries.values().iterator();
+        while(this.bytes > this.maxBytes && eldest.hasNext())
+        {
+            final Entry evicted = eldest.next();
+            eldest.remove();
+            this.forget(evicted);
+        }
+    }
+
+    private void forget(final Entry entry)
+    {
+        entry.cached = false;
+        this.bytes -= entry.bytes;
+        if(entry.watch != null)
+        {
+            this.watcher.unwatch(entry.watch);
+            entry.watch = null;
+        }
+    }
+
+    /**
+     * The contents of a version of a file, and the results of matching them.
+     */
+    static final class Entry
+    {
+        private final Path path;
+
+        private final long size;
+
+        private final FileTime modified;
+
+        private final Object fileKey;
+
+        private final Map<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+        private volatile String contents;
+
+        // guarded by the cache
+        private long bytes;
+
+        // guarded by the cache
+        private boolean cached;
+
+        // guarded by the cache
+        private FileWatcher.Watch watch;
+
+        private Entry(final Path path, final BasicFileAttributes attributes)
+        {
+            this.path = path;
+            this.size = attributes.size();
+            this.modified = attributes.lastModifiedTime();
+            this.fileKey = attributes.fileKey();
+        }
+
+        private boolean isVersion(final BasicFileAttributes attributes)
+        {
+            return this.size == attributes.size() && this.modified.equals(attributes.lastModifiedTime()) &&
+                   Objects.equals(this.fileKey, attributes.fileKey());
+        }
+
+        /**
+         * Get the decoded contents of the file.
+         *
+         * @return the contents, or {@code null} if they have not been read, or are too large to keep.
+         */
+        String getContents()
+        {
+            return this.contents;
+        }
+
+        /**
+         * Get whether the contents of the file match an activation.
+         *
+         * @param activation The activation, such as the activator and the property value
+         * @return whether the contents match, or {@code null} if that is not known.
+         */
+        Boolean getDecision(final String activation)
+        {
+            return this.decisions.get(activation);
+        }
+    }
+}
@@ -16,12 +16,16 @@
 
 package io.oddsource.java.maven.profile;
 
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.apache.maven.model.ActivationProperty;
 import org.apache.maven.model.building.ModelProblemCollector;
+import org.apache.maven.model.profile.ProfileActivationContext;
 import org.codehaus.plexus.logging.Logger;
 
 /**
@@ -31,19 +35,23 @@ import org.codehaus.plexus.logging.Logger;
  */
 @Named("propertyFileRegexActivator")
 @Singleton
-public class FileRegexActivator extends BaseFileContentsActivator implements RegexHelperMixin
+public class FileRegexActivator extends BaseFileContentsActivator
+    implements RegexHelperMixin, UserPropertiesHelperMixin
 {
     private static final String BRACKET_NAME = "FILE.REGEX";
 
+    private static final String LINE_LOCAL = "finer.activator.file.regexLineLocal";
+
     /**
      * Construct a FileRegexActivator.
      *
      * @param logger A Maven logger, auto-injected by Maven
+     * @param session The activation session, auto-injected by Maven
      */
     @Inject
-    public FileRegexActivator(final Logger logger)
+    public FileRegexActivator(final Logger logger, final ActivationSession session)
     {
-        super(logger);
+        super(logger, session);
     }
 
     @Override
@@ -60,4 +68,50 @@ public class FileRegexActivator extends BaseFileContentsActivator implements Reg
     {
         return this.match(contents, property, problems);
     }
+
+    @Override
+    boolean isResultCacheable(final ActivationProperty property)
+    {
+        // an invalid pattern is reported by every evaluation
+        return Utilities.getPattern(property, request -> { }, Pattern.MULTILINE) != null;
+    }
+
+    @Override
+    Boolean mappedContentsMatch(
+        final CharSequence contents,
+        final ActivationProperty property,
+        final ProfileActivationContext context,
+        final ModelProblemCollector problems
+    ) throws IOException
+    {
+        // a match that spans lines would be missed by the regions, so this is only done when asked for
+        if(!ParallelScan.applies(contents.length()) ||
+           !Boolean.parseBoolean(this.getUserOrSystemProperty(FileRegexActivator.LINE_LOCAL, context)))
+        {
+            return this.match(contents, property, problems);
+        }
+        final Pattern pattern = Utilities.getPattern(property, problems, Pattern.MULTILINE);
+        if(pattern == null)
+        {
+            return false;
+        }
+        return ParallelScan.anyMatches(
+            ParallelScan.split(contents.length(), position -> FileRegexActivator.lineStart(contents, position)),
+            (start, end, stopped) -> {
+                // a match within the region is a match within the contents, whose anchors and lookarounds apply
+                final Matcher matcher = pattern.matcher(contents).region((int) start, (int) end);
+                return matcher.useTransparentBounds(true).useAnchoringBounds(false).find();
+            }
+        );
+    }
+
+    private static long lineStart(final CharSequence contents, final long position)
+    {
+        int i = (int) position;
+        while(i > 0 && i < contents.length() && contents.charAt(i - 1) != '\n')
+        {
+            i++;
+        }
+        return i;
+    }
 }
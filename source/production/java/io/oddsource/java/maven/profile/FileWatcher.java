@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Watches the directories of files, so that what is known about the files can be forgotten as soon as they change. A
+ * daemon thread delivers the changes. A directory is watched for as long as at least one of its files is.
+ */
+final class FileWatcher
+{
+    private final WatchService service;
+
+    private final Consumer<Path> changed;
+
+    private final Consumer<Path> overflowed;
+
+    private final Map<Path, Watch> directories = new HashMap<>();
+
+    private FileWatcher(final WatchService service, final Consumer<Path> changed, final Consumer<Path> overflowed)
+    {
+        this.service = service;
+        this.changed = changed;
+        this.overflowed = overflowed;
+    }
+
+    /**
+     * Start watching.
+     *
+     * @param changed Called with a file that was created, deleted, or modified
+     * @param overflowed Called with a directory in which any file may have changed, because changes were lost or the
+     *     directory is no longer watched
+     * @return the watcher, or {@code null} if the file system cannot be watched promptly.
+     */
+    static FileWatcher start(final Consumer<Path> changed, final Consumer<Path> overflowed)
+    {
+        final WatchService service;
+        try
+        {
+            service = FileSystems.getDefault().newWatchService();
+        }
+        catch(final IOException | UnsupportedOperationException e)
+        {
+            return null;
+        }
+        // a polling watch service (as on macOS) reports changes seconds after they happen, which is too late to trust
+        if(service.getClass().getName().contains("Polling"))
+        {
+            FileWatcher.close(service);
+            return null;
+        }
+
+        final FileWatcher watcher = new FileWatcher(service, changed, overflowed);
+        final Thread thread = new Thread(watcher::run, "finer-activator-watcher");
+        thread.setDaemon(true);
+        thread.start();
+        return watcher;
+    }
+
+    /**
+     * Watch the directory containing a file. Every watch that succeeds must be followed by a call to
+     * {@link #unwatch(Watch)} once the file no longer needs to be watched.
+     *
+     * @param file The file, which need not exist
+     * @return the watch, or {@code null} if the directory cannot be watched, which it cannot be if it does not exist.
+     */
+    synchronized Watch watch(final Path file)
+    {
+        final Path directory = file.getParent();
+        if(directory == null)
+        {
+            return null;
+        }
+        Watch watch = this.directories.get(directory);
+        if(watch == null)
+        {
+            try
+            {
+                watch = new Watch(
+                    directory,
+                    directory.register(
+                        this.service,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY
+                    )
+                );
+            }
+            catch(final IOException | SecurityException | UnsupportedOperationException |
+                        ClosedWatchServiceException e)
+            {
+                return null;
+            }
+            this.directories.put(directory, watch);
+        }
+        watch.files++;
+        return watch;
+    }
+
+    /**
+     * Stop watching a file, and its directory once none of its files are watched.
+     *
+     * @param watch The watch returned when the file started to be watched
+     */
+    synchronized void unwatch(final Watch watch)
+    {
+        if(--watch.files == 0)
+        {
+            watch.key.cancel();
+            this.directories.remove(watch.directory, watch);
+        }
+    }
+
+    private void run()
+    {
+        while(true)
+        {
+            final WatchKey key;
+            try
+            {
+                key = this.service.take();
+            }
+            catch(final InterruptedException | ClosedWatchServiceException e)
+            {
+                return;
+            }
+            final Path directory = (Path) key.watchable();
+            for(final WatchEvent<?> event : key.pollEvents())
+            {
+                if(event.kind() == StandardWatchEventKinds.OVERFLOW)
+                {
+                    this.overflowed.accept(directory);
+                }
+                else
+                {
+                    this.changed.accept(directory.resolve((Path) event.context()));
+                }
+            }
+            // the directory was deleted, or can no longer be watched
+            if(!key.reset())
+            {
+                this.forget(directory, key);
+                this.overflowed.accept(directory);
+            }
+        }
+    }
+
+    private synchronized void forget(final Path directory, final WatchKey key)
+    {
+        final Watch watch = this.directories.get(directory);
+        if(watch != null && watch.key == key)
+        {
+            this.directories.remove(directory);
+        }
+    }
+
+    private static void close(final WatchService service)
+    {
+        try
+        {
+            service.close();
+        }
+        catch(final IOException e)
+        {
+            // it was never used
+        }
+    }
+
+    /**
+     * A watched directory, and the number of its files that are watched.
+     */
+    static final class Watch
+    {
+        private final Path directory;
+
+        private final WatchKey key;
+
+        // guarded by the watcher
+        private int files;
+
+        private Watch(final Path directory, final WatchKey key)
+        {
+            this.directory = directory;
+            this.key = key;
+        }
+    }
+}
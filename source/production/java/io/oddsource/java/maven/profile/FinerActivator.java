@@ -54,4 +54,23 @@ public interface FinerActivator
         ProfileActivationContext context,
         ModelProblemCollector problems
     );
+
+    /**
+     * Does any expensive work needed to evaluate the property ahead of time, so that a later call to
+     * {@link #isActive} finds its result ready. Called, possibly concurrently, for every property in the reactor at
+     * the start of the build session if prefetching is enabled with the {@code finer.activator.prefetch} property.
+     * Problems are not reported here; {@link #isActive} reports them when the property is evaluated. The default
+     * implementation does nothing.
+     *
+     * @param name The name of the property with the brackets ({@code [FINER.ACTIVATOR.*]}) removed
+     * @param property The property object
+     * @param context The activation context, with the user and system properties of the session
+     */
+    default void prefetch(
+        final String name,
+        final ActivationProperty property,
+        final ProfileActivationContext context
+    )
+    {
+    }
 }
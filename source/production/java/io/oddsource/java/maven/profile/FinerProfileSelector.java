@@ -48,7 +48,7 @@ import org.codehaus.plexus.logging.Logger;
 @Singleton
 public class FinerProfileSelector extends DefaultProfileSelector
 {
-    private static final Pattern ACTIVATOR_PATTERN = Pattern.compile(
+    static final Pattern ACTIVATOR_PATTERN = Pattern.compile(
         "^\\[FINER\\.ACTIVATOR\\.(?<activator>[A-Z0-9.]+)](?<property>.*)$"
     );
 
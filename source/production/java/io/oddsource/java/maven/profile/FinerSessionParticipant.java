@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.util.List;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.execution.MavenSession;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Maven automatically constructs this participant, which scopes the {@link ActivationSession} to a single build
+ * session. This matters most when the JVM outlives a single build (for example, under the Maven daemon). At the start
+ * of the session, it also prefetches finer activations if the {@code finer.activator.prefetch} property is set.
+ *
+ * @since 1.0.0
+ */
+@Named("finerSessionParticipant")
+@Singleton
+public class FinerSessionParticipant extends AbstractMavenLifecycleParticipant
+{
+    private final Logger logger;
+
+    private final ActivationSession session;
+
+    private final ActivationPrefetcher prefetcher;
+
+    /**
+     * Construct a participant.
+     *
+     * @param logger A Maven logger, auto-injected by Maven
+     * @param session The activation session, auto-injected by Maven
+     * @param finerActivators All activators defined in io.oddsource.java.maven.profile, auto-injected by Maven
+     */
+    @Inject
+    public FinerSessionParticipant(
+        final Logger logger,
+        final ActivationSession session,
+        final List<FinerActivator> finerActivators
+    )
+    {
+        this.logger = logger;
+        this.session = session;
+        this.prefetcher = new ActivationPrefetcher(logger, finerActivators);
+    }
+
+    @Override
+    public void afterSessionStart(final MavenSession mavenSession)
+    {
+        this.logger.debug("FinerSessionParticipant: resetting activation session at session start.");
+        this.session.reset();
+        this.prefetcher.prefetch(mavenSession.getRequest());
+    }
+
+    @Override
+    public void afterSessionEnd(final MavenSession mavenSession)
+    {
+        if(this.logger.isDebugEnabled())
+        {
+            this.logger.debug("FinerSessionParticipant: " + this.session.getSubprocessScheduler().getStatistics());
+            this.logger.debug("FinerSessionParticipant: " + this.session.getActivationBudget().describeConsumers());
+        }
+        this.logger.debug("FinerSessionParticipant: resetting activation session at session end.");
+        this.session.reset();
+    }
+}
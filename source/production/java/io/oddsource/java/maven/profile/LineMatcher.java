@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+/**
+ * Decides a match incrementally while output is still being produced, one line at a time. The lines fed to a matcher
+ * are exactly the lines that would otherwise have been joined with {@code \n} into the complete output, but a long
+ * line is fed in parts. A matcher may batch lines while output arrives faster than it can be examined, as long as it
+ * examines them on {@link #flush()}.
+ */
+interface LineMatcher
+{
+    /**
+     * Feed the next line of output, or the next part of one.
+     *
+     * @param part The line or part, without its line terminator
+     * @param lineStart Whether the part starts a line, and so follows a line break unless it is the first
+     * @return whether the output seen so far matches, in which case no more lines need to be fed.
+     */
+    boolean feed(String part, boolean lineStart);
+
+    /**
+     * Decide on any output that was fed but not yet examined. Called whenever no more output is immediately
+     * available, including at the end of the output.
+     *
+     * @return whether the output seen so far matches.
+     */
+    default boolean flush()
+    {
+        return false;
+    }
+}
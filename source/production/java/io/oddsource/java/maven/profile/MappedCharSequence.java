@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.oddsource.java.maven.profile;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The contents of a file mapped into memory, decoded a character at a time as they are read, so that a regular
+ * expression can search a file of any size without it being copied to the heap. Only charsets in which every byte is
+ * one character are decoded this way: ISO-8859-1, US-ASCII (whose bytes above {@code 0x7F} are malformed and decoded
+ * as {@code U+FFFD}, as {@link String#String(byte[], Charset)} does), and UTF-8 contents that are entirely ASCII.
+ */
+final class MappedCharSequence implements CharSequence
+{
+    private static final long NON_ASCII = 0x8080808080808080L;
+
+    private final ByteBuffer buffer;
+
+    private final int offset;
+
+    private final int length;
+
+    private final boolean latin1;
+
+    private MappedCharSequence(final ByteBuffer buffer, final int offset, final int length, final boolean latin1)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.latin1 = latin1;
+    }
+
+    /**
+     * Get the decoded contents of a buffer.
+     *
+     * @param buffer The mapped contents of a file
+     * @param charset The charset of the contents
+     * @return the contents, or {@code null} if they cannot be decoded a byte at a time.
+     */
+    static MappedCharSequence of(final ByteBuffer buffer, final Charset charset)
+    {
+        final boolean latin1 = StandardCharsets.ISO_8859_1.equals(charset);
+        if(!latin1 && !StandardCharsets.US_ASCII.equals(charset) &&
+           !(StandardCharsets.UTF_8.equals(charset) && MappedCharSequence.isAscii(buffer)))
+        {
+            return null;
+        }
+        return new MappedCharSequence(buffer, 0, buffer.limit(), latin1);
+    }
+
+    /**
+     * Indicates whether every byte is ASCII, examining eight bytes at a time.
+     */
+    static boolean isAscii(final ByteBuffer buffer)
+    {
+        final int limit = buffer.limit();
+        int i = 0;
+        for(; i <= limit - Long.BYTES; i += Long.BYTES)
+        {
+            if((buffer.getLong(i) & MappedCharSequence.NON_ASCII) != 0)
+            {
+                return false;
+            }
+        }
+        for(; i < limit; i++)
+        {
+            if(buffer.get(i) < 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int length()
+    {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(final int index)
+    {
+        if(index < 0 || index >= this.length)
+        {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + this.length);
+        }
+        final byte b = this.buffer.get(this.offset + index);
+        if(b >= 0 || this.latin1)
+        {
+            return (char) (b & 0xFF);
+        }
+        return '\uFFFD';
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end)
+    {
+        if(start < 0 || end > this.length || start > end)
+        {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + this.length);
+        }
+        return new MappedCharSequence(this.buffer, this.offset + start, end - start, this.latin1);
+    }
+
+    @Override
+    public String toString()
+    {
+        final char[] chars = new char[this.length];
+        for(int i = 0; i < this.length; i++)
+        {
+            chars[i] = this.charAt(i);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Searches the regions of a very large file concurrently, on a pool shared by all evaluations, so that a search is
+ * not limited to the speed of one processor, and stops as soon as any region matches: regions that have not started
+ * are skipped, and regions being searched may give up.
+ */
+final class ParallelScan
+{
+    private static final long THRESHOLD = 32L * 1024 * 1024;
+
+    private static final long REGION_SIZE = 4L * 1024 * 1024;
+
+    private ParallelScan()
+    {
+    }
+
+    /**
+     * Indicates whether contents are large enough, and there are processors enough, to search them concurrently.
+     *
+     * @param size The size of the contents
+     * @return whether to search the contents concurrently.
+     */
+    static boolean applies(final long size)
+    {
+        return size >= ParallelScan.THRESHOLD && Runtime.getRuntime().availableProcessors() > 1;
+    }
+
+    /**
+     * Split contents into regions of about the same size.
+     *
+     * @param size The size of the contents
+     * @param align Moves the end of a region to where a region may end, such as the beginning of the next line
+     * @return the boundaries of the regions, beginning with {@code 0} and ending with {@code size}.
+     */
+    static long[] split(final long size, final LongUnaryOperator align)
+    {
+        final int count = (int) Math.max(1, (size + ParallelScan.REGION_SIZE - 1) / ParallelScan.REGION_SIZE);
+        final long[] boundaries = new long[count + 1];
+        for(int i = 1; i < count; i++)
+        {
+            // an alignment that passes the next boundary leaves regions that are empty
+            boundaries[i] = Math.max(boundaries[i - 1], Math.min(size, align.applyAsLong(size / count * i)));
+        }
+        boundaries[count] = size;
+        return boundaries;
+    }
+
+    /**
+     * Search the regions concurrently.
+     *
+     * @param boundaries The boundaries of the regions, as returned by {@link #split}
+     * @param search The search of a region
+     * @return whether any region matches.
+     * @throws IOException if a region could not be read
+     */
+    static boolean anyMatches(final long[] boundaries, final RegionSearch search) throws IOException
+    {
+        final Scan scan = new Scan(boundaries, 0, boundaries.length - 1, search, new Result());
+        Pool.INSTANCE.invoke(scan);
+        if(scan.result.failure.get() != null)
+        {
+            throw scan.result.failure.get();
+        }
+        return scan.result.found.get();
+    }
+
+    /**
+     * The search of a region.
+     */
+    @FunctionalInterface
+    interface RegionSearch
+    {
+        /**
+         * Search a region.
+         *
+         * @param start The beginning of the region
+         * @param end The end of the region
+         * @param stopped Indicates whether another region has matched, after which the search may give up
+         * @return whether the region matches.
+         * @throws IOException if the region could not be read
+         */
+        boolean search(long start, long end, BooleanSupplier stopped) throws IOException;
+    }
+
+    /**
+     * The outcome shared by the tasks of a search.
+     */
+    private static final class Result
+    {
+        private final AtomicBoolean found = new AtomicBoolean();
+
+        private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+        private boolean isStopped()
+        {
+            return this.found.get() || this.failure.get() != null;
+        }
+    }
+
+    /**
+     * Searches a range of regions, splitting it in two until it is one region.
+     */
+    private static final class Scan extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long[] boundaries;
+
+        private final int from;
+
+        private final int to;
+
+        private final transient RegionSearch search;
+
+        private final transient Result result;
+
+        private Scan(
+            final long[] boundaries,
+            final int from,
+            final int to,
+            final RegionSearch search,
+            final Result result
+        )
+        {
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+            this.search = search;
+            this.result = result;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if(this.result.isStopped())
+            {
+                return;
+            }
+            if(this.to - this.from > 1)
+            {
+                final int middle = (this.from + this.to) >>> 1;
+                ForkJoinTask.invokeAll(
+                    new Scan(this.boundaries, this.from, middle, this.search, this.result),
+                    new Scan(this.boundaries, middle, this.to, this.search, this.result)
+                );
+                return;
+            }
+            try
+            {
+                if(this.search.search(this.boundaries[this.from], this.boundaries[this.to], this.result::isStopped))
+                {
+                    this.result.found.set(true);
+                }
+            }
+            catch(final IOException e)
+            {
+                this.result.failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    /**
+     * The pool, created when it is first needed. Its threads are daemon threads that end when idle.
+     */
+    private static final class Pool
+    {
+        private static final ForkJoinPool INSTANCE = new ForkJoinPool(
+            Runtime.getRuntime().availableProcessors(),
+            pool -> {
+                final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("finer-activator-scan-" + thread.getPoolIndex());
+                return thread;
+            },
+            null,
+            false
+        );
+
+        private Pool()
+        {
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.oddsource.java.maven.profile;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The parsed form of the name of a finer activation property (the part after the {@code [BRACKET]}), which is the
+ * same for every model that uses the property. Maven evaluates every profile of every model, so names are parsed once
+ * per session (see {@link ActivationSession#getParsedCommand}) instead of once per evaluation. A problem with the name
+ * is kept, instead of reported, so that it can still be reported for every model that uses the property.
+ */
+final class ParsedName
+{
+    private static final String TIMEOUT_PREFIX = "[TIMEOUT=";
+
+    private final String timeoutValue;
+
+    private final long timeout;
+
+    private final Utilities.CharsetAndRemainder charsetAndRemainder;
+
+    private final List<String> arguments;
+
+    private ParsedName(
+        final String timeoutValue,
+        final Utilities.CharsetAndRemainder charsetAndRemainder,
+        final boolean tokenize
+    )
+    {
+        this.timeoutValue = timeoutValue;
+        this.timeout = timeoutValue == null ? 0 : Utilities.parseDuration(timeoutValue);
+        this.charsetAndRemainder = charsetAndRemainder;
+        this.arguments = tokenize && charsetAndRemainder.getRemainder() != null ?
+            Collections.unmodifiableList(Utilities.tokenize(charsetAndRemainder.getRemainder())) :
+            null;
+    }
+
+    /**
+     * Parse the name of a command property: {@code [TIMEOUT=duration]}, then {@code [CHARSET]}, both optional, then
+     * the command, which is tokenized.
+     *
+     * @param name The name
+     * @param defaultCharset The charset if the name has no {@code [CHARSET]}
+     * @return the parsed name.
+     */
+    static ParsedName command(final String name, final Charset defaultCharset)
+    {
+        // the same as matching ^\[TIMEOUT=(?<timeout>[^]]*)](?<remainder>.*)$
+        if(name.startsWith(ParsedName.TIMEOUT_PREFIX))
+        {
+            final int end = name.indexOf(']', ParsedName.TIMEOUT_PREFIX.length());
+            if(end >= 0 && !Utilities.hasLineTerminator(name, end + 1))
+            {
+                return new ParsedName(
+                    name.substring(ParsedName.TIMEOUT_PREFIX.length(), end),
+                    new Utilities.CharsetAndRemainder(name.substring(end + 1), defaultCharset),
+                    true
+                );
+            }
+        }
+        return new ParsedName(null, new Utilities.CharsetAndRemainder(name, defaultCharset), true);
+    }
+
+    /**
+     * Parse the name of a file property: {@code [CHARSET]}, which is optional, then the file name.
+     *
+     * @param name The name
+     * @param defaultCharset The charset if the name has no {@code [CHARSET]}
+     * @return the parsed name.
+     */
+    static ParsedName file(final String name, final Charset defaultCharset)
+    {
+        return new ParsedName(null, new Utilities.CharsetAndRemainder(name, defaultCharset), false);
+    }
+
+    /**
+     * Get the unparsed timeout of a command.
+     *
+     * @return the value of the {@code [TIMEOUT=duration]} prefix, or {@code null} if there is no prefix.
+     */
+    String getTimeoutValue()
+    {
+        return this.timeoutValue;
+    }
+
+    /**
+     * Get the timeout of a command.
+     *
+     * @return the timeout in nanoseconds, or {@code -1} if the prefix is not a positive duration.
+     */
+    long getTimeout()
+    {
+        return this.timeout;
+    }
+
+    Charset getCharset()
+    {
+        return this.charsetAndRemainder.getCharset();
+    }
+
+    String getRemainder()
+    {
+        return this.charsetAndRemainder.getRemainder();
+    }
+
+    /**
+     * Get the tokenized command.
+     *
+     * @return the unmodifiable command arguments, or {@code null} if this is not a command or a problem occurred.
+     */
+    List<String> getArguments()
+    {
+        return this.arguments;
+    }
+
+    /**
+     * Get the problem with the {@code [CHARSET]} or the remainder of the name.
+     *
+     * @return the problem message, or {@code null} if there is no problem.
+     */
+    String getProblem()
+    {
+        return this.charsetAndRemainder.getProblem();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.oddsource.java.maven.profile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The programs in the directories of a {@code PATH}, found the way a shell finds them: the first regular, executable
+ * file of the name, searching the directories in order. Each directory is listed once, when the index is created,
+ * and only the files of a name being looked up are examined. On Windows, names are case-insensitive and a name
+ * without an extension also finds the program with each extension of {@code PATHEXT}.
+ */
+final class PathIndex
+{
+    private static final boolean WINDOWS = System.getProperty("os.name").startsWith("Windows");
+
+    private static final String DEFAULT_PATHEXT = ".COM;.EXE;.BAT;.CMD";
+
+    private final Map<String, List<Path>> candidates;
+
+    private final Map<Path, Integer> directories;
+
+    private final List<String> extensions;
+
+    private final Map<String, Optional<Path>> found = new ConcurrentHashMap<>();
+
+    private PathIndex(
+        final Map<String, List<Path>> candidates,
+        final Map<Path, Integer> directories,
+        final List<String> extensions
+    )
+    {
+        this.candidates = candidates;
+        this.directories = directories;
+        this.extensions = extensions;
+    }
+
+    /**
+     * Index the {@code PATH} of this JVM, which commands executed by the activators inherit.
+     *
+     * @return the index.
+     */
+    static PathIndex ofEnvironment()
+    {
+        return PathIndex.of(
+            System.getenv("PATH"),
+            PathIndex.WINDOWS ? Optional.ofNullable(System.getenv("PATHEXT")).orElse(PathIndex.DEFAULT_PATHEXT) : null
+        );
+    }
+
+    /**
+     * Index a {@code PATH}.
+     *
+     * @param path The {@code PATH}, or {@code null} if it is not set
+     * @param pathExt The {@code PATHEXT}, which is only given on Windows, and otherwise {@code null}
+     * @return the index.
+     */
+    static PathIndex of(final String path, final String pathExt)
+    {
+        final Map<String, List<Path>> candidates = new HashMap<>();
+        final Map<Path, Integer> directories = new HashMap<>();
+        if(path != null)
+        {
+            for(final String entry : path.split(File.pathSeparator))
+            {
+                final Path directory;
+                try
+                {
+                    // as in a shell, an empty entry is the working directory
+                    directory = Paths.get(entry.isEmpty() ? "." : entry).toAbsolutePath();
+                }
+                catch(final InvalidPathException e)
+                {
+                    continue;
+                }
+                if(directories.putIfAbsent(directory, directories.size()) == null)
+                {
+                    PathIndex.list(directory, pathExt != null, candidates);
+                }
+            }
+        }
+        final List<String> extensions = new ArrayList<>();
+        if(pathExt != null)
+        {
+            for(final String extension : pathExt.split(";"))
+            {
+                if(!extension.isEmpty())
+                {
+                    extensions.add(extension.toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        return new PathIndex(candidates, directories, extensions);
+    }
+
+    private static void list(
+        final Path directory,
+        final boolean caseInsensitive,
+        final Map<String, List<Path>> candidates
+    )
+    {
+        try(DirectoryStream<Path> stream = Files.newDirectoryStream(directory))
+        {
+            for(final Path file : stream)
+            {
+                final String name = file.getFileName().toString();
+                candidates.computeIfAbsent(
+                    caseInsensitive ? name.toLowerCase(Locale.ROOT) : name,
+                    key -> new ArrayList<>(1)
+                ).add(file);
+            }
+        }
+        catch(final IOException | DirectoryIteratorException | SecurityException e)
+        {
+            // a directory that does not exist or cannot be read contains no programs, as far as a shell can tell
+        }
+    }
+
+    /**
+     * Find a program, or an executable file if the name contains a directory, as a shell would when executing it.
+     *
+     * @param name The name of the program or file
+     * @return the program or file, or {@code null} if it is not found.
+     */
+    Path resolve(final String name)
+    {
+        if(name.indexOf('/') < 0 && !(PathIndex.WINDOWS && name.indexOf('\\') >= 0))
+        {
+            return this.find(name);
+        }
+        try
+        {
+            final Path file = Paths.get(name).toAbsolutePath();
+            return Files.isRegularFile(file) && Files.isExecutable(file) ? file : null;
+        }
+        catch(final InvalidPathException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Find a program.
+     *
+     * @param program The name of the program, without a directory
+     * @return the program, or {@code null} if it is not found.
+     */
+    Path find(final String program)
+    {
+        return this.found.computeIfAbsent(program, key -> Optional.ofNullable(this.search(key))).orElse(null);
+    }
+
+    private Path search(final String program)
+    {
+        if(this.extensions.isEmpty())
+        {
+            return PathIndex.firstExecutable(this.candidates.get(program));
+        }
+        final String name = program.toLowerCase(Locale.ROOT);
+        final List<String> names = new ArrayList<>(this.extensions.size() + 1);
+        if(this.extensions.stream().anyMatch(name::endsWith))
+        {
+            names.add(name);
+        }
+        for(final String extension : this.extensions)
+        {
+            names.add(name + extension);
+        }
+        // every directory is searched for each of the names before the next directory is searched
+        final List<Path> matches = new ArrayList<>();
+        for(final String candidate : names)
+        {
+            matches.addAll(this.candidates.getOrDefault(candidate, Collections.emptyList()));
+        }
+        matches.sort(Comparator.comparing(file -> this.directories.get(file.getParent())));
+        return PathIndex.firstExecutable(matches);
+    }
+
+    private static Path firstExecutable(final List<Path> files)
+    {
+        if(files != null)
+        {
+            for(final Path file : files)
+            {
+                if(Files.isRegularFile(file) && Files.isExecutable(file))
+                {
+                    return file;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks every live activation process, so that they can be killed, together with everything they started, when the
+ * JVM shuts down. A build that is cancelled (for example, by a CI system sending {@code SIGTERM} to Maven alone)
+ * would otherwise leave the processes it was waiting for running, orphaned.
+ */
+final class ProcessRegistry
+{
+    private static final Set<Process> PROCESSES = ConcurrentHashMap.newKeySet();
+
+    private static boolean hookAdded;
+
+    private static volatile boolean shuttingDown;
+
+    private ProcessRegistry()
+    {
+    }
+
+    /**
+     * Track a process until it is {@link #unregister(Process) unregistered}.
+     *
+     * @param process The process, which has just been started
+     * @throws IOException if the JVM is shutting down, in which case the process has been killed
+     */
+    static void register(final Process process) throws IOException
+    {
+        ProcessRegistry.addHook();
+        ProcessRegistry.PROCESSES.add(process);
+        // the hook may have run, or be running, without seeing this process
+        if(ProcessRegistry.shuttingDown)
+        {
+            ProcessRegistry.PROCESSES.remove(process);
+            ProcessTrees.destroyForcibly(process);
+            throw new IOException("The JVM is shutting down.");
+        }
+    }
+
+    /**
+     * Stop tracking a process, which has exited or been killed.
+     *
+     * @param process The process
+     */
+    static void unregister(final Process process)
+    {
+        ProcessRegistry.PROCESSES.remove(process);
+    }
+
+    private static synchronized void addHook()
+    {
+        if(ProcessRegistry.hookAdded)
+        {
+            return;
+        }
+        try
+        {
+            Runtime.getRuntime().addShutdownHook(new Thread(ProcessRegistry::destroyAll, "finer-activator-reaper"));
+            ProcessRegistry.hookAdded = true;
+        }
+        catch(final IllegalStateException e)
+        {
+            // the JVM is already shutting down
+            ProcessRegistry.shuttingDown = true;
+        }
+    }
+
+    private static void destroyAll()
+    {
+        ProcessRegistry.shuttingDown = true;
+        for(final Process process : ProcessRegistry.PROCESSES)
+        {
+            ProcessTrees.destroyForcibly(process);
+        }
+        ProcessRegistry.PROCESSES.clear();
+    }
+}
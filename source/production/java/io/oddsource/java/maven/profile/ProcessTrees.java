@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Kills processes together with every process they started. Killing only the process itself leaves its children (for
+ * example, everything started by a {@code sh -c} command) running, orphaned, after the build has given up on them.
+ * Walking the process tree requires {@code ProcessHandle}, which was added in Java 9, so it is used reflectively;
+ * on Java 8, only the process itself is killed.
+ */
+final class ProcessTrees
+{
+    private static final Method DESCENDANTS = ProcessTrees.findMethod("java.lang.Process", "descendants");
+
+    private static final Method DESTROY_FORCIBLY = ProcessTrees.findMethod(
+        "java.lang.ProcessHandle",
+        "destroyForcibly"
+    );
+
+    private ProcessTrees()
+    {
+    }
+
+    /**
+     * Forcibly kill the process and all of its descendants.
+     *
+     * @param process The process to kill
+     */
+    static void destroyForcibly(final Process process)
+    {
+        // the descendants must be found before the process dies, because orphans are adopted by another process
+        final List<?> descendants = ProcessTrees.descendants(process);
+        process.destroyForcibly();
+        for(final Object descendant : descendants)
+        {
+            try
+            {
+                ProcessTrees.DESTROY_FORCIBLY.invoke(descendant);
+            }
+            catch(final IllegalAccessException | InvocationTargetException e)
+            {
+                // the descendant has already exited or cannot be killed by us; nothing more can be done
+            }
+        }
+    }
+
+    private static List<?> descendants(final Process process)
+    {
+        if(ProcessTrees.DESCENDANTS == null || ProcessTrees.DESTROY_FORCIBLY == null)
+        {
+            return Collections.emptyList();
+        }
+        try
+        {
+            try(Stream<?> stream = (Stream<?>) ProcessTrees.DESCENDANTS.invoke(process))
+            {
+                return stream.collect(Collectors.toList());
+            }
+        }
+        catch(final IllegalAccessException | InvocationTargetException e)
+        {
+            return Collections.emptyList();
+        }
+    }
+
+    private static Method findMethod(final String className, final String methodName)
+    {
+        try
+        {
+            return Class.forName(className).getMethod(methodName);
+        }
+        catch(final ClassNotFoundException | NoSuchMethodException e)
+        {
+            return null;
+        }
+    }
+}
@@ -24,12 +24,12 @@ import org.apache.maven.model.building.ModelProblemCollector;
 interface RegexHelperMixin
 {
     default boolean match(
-        final String subject,
+        final CharSequence subject,
         final ActivationProperty property,
         final ModelProblemCollector problems
     )
     {
         final Pattern pattern = Utilities.getPattern(property, problems, Pattern.MULTILINE);
-        return subject != null && !subject.isEmpty() && pattern != null && pattern.matcher(subject).find();
+        return subject != null && subject.length() > 0 && pattern != null && pattern.matcher(subject).find();
     }
 }
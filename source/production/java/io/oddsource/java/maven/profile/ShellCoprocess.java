@@ -0,0 +1,253 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A long-lived {@code /bin/sh} that executes commands on behalf of the subprocess activators, so that a command costs
+ * a fork of the shell instead of a new process started by the JVM. Each command is written to the shell's input,
+ * followed by a {@code printf} of a random marker and the exit code, and its output is read back up to the marker.
+ *
+ * <p>Every command is run with {@code exec} in a subshell, so that the program that runs is the same one (found on
+ * the same {@code PATH}) that would run without the shell. The shell runs one command at a time; callers that find
+ * it busy, or that need something it cannot provide, start a process of their own.
+ */
+final class ShellCoprocess implements Closeable
+{
+    private static final File SHELL = new File("/bin/sh");
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Process process;
+
+    private final OutputStream input;
+
+    private final InputStream output;
+
+    private final byte[] marker;
+
+    private final File directory;
+
+    private final Map<String, String> environment;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile boolean broken;
+
+    private ShellCoprocess(final Process process)
+    {
+        this.process = process;
+        this.input = process.getOutputStream();
+        this.output = new BufferedInputStream(process.getInputStream(), ShellCoprocess.BUFFER_SIZE);
+        this.marker = ("finer-activator-" + UUID.randomUUID() + " ").getBytes(StandardCharsets.US_ASCII);
+        this.directory = new File("").getAbsoluteFile();
+        this.environment = System.getenv();
+    }
+
+    /**
+     * Indicates whether there is a shell to start on this system.
+     *
+     * @return whether {@link #start(File)} can be expected to succeed.
+     */
+    static boolean isSupported()
+    {
+        return ShellCoprocess.SHELL.canExecute();
+    }
+
+    /**
+     * Start the shell.
+     *
+     * @param nullFile The operating system's null device, to which the shell's own error output goes
+     * @return the started shell.
+     * @throws IOException if the shell could not be started
+     */
+    static ShellCoprocess start(final File nullFile) throws IOException
+    {
+        final Process process = new ProcessBuilder(ShellCoprocess.SHELL.getPath())
+            .redirectError(ProcessBuilder.Redirect.to(nullFile))
+            .start();
+        ProcessRegistry.register(process);
+        return new ShellCoprocess(process);
+    }
+
+    /**
+     * Indicates whether the shell can still be used.
+     *
+     * @return whether the shell is running and has not misbehaved.
+     */
+    boolean isUsable()
+    {
+        return !this.broken && this.process.isAlive();
+    }
+
+    /**
+     * Execute a command in the shell, if it can be executed there exactly as it would be by itself.
+     *
+     * @param command The command
+     * @param discardOutput Whether only the exit code is needed
+     * @param deadline The {@link System#nanoTime()} by which the command must complete
+     * @return the exit code and output of the command, or {@code null} if the command must be executed in a process
+     *     of its own (because the shell is busy, cannot run this command, or misbehaved).
+     * @throws TimeoutException if the command did not complete by the deadline (the shell is then killed)
+     * @throws InterruptedException if interrupted while waiting for the command (the shell is then killed)
+     */
+    CompletedCommand execute(final SubprocessCommand command, final boolean discardOutput, final long deadline)
+        throws TimeoutException, InterruptedException
+    {
+        if(command.getErrorOutput() == ErrorOutput.SEPARATE ||
+           !command.getDirectory().equals(this.directory) ||
+           !command.getEnvironment().equals(this.environment) ||
+           !this.lock.tryLock())
+        {
+            return null;
+        }
+        try
+        {
+            if(!this.isUsable())
+            {
+                return null;
+            }
+            this.input.write(this.script(command, discardOutput).getBytes(StandardCharsets.UTF_8));
+            this.input.flush();
+            final Future<CompletedCommand> reading = StreamDrainer.submit(() -> this.read(command.getOutputLimit()));
+            final CompletedCommand completed = reading.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            // the shell reports a program that cannot be found or run with these codes, where a process of its own
+            // would fail to start instead; let the caller find out which it is
+            return completed.getExitCode() == 126 || completed.getExitCode() == 127 ? null : completed;
+        }
+        catch(final TimeoutException | InterruptedException e)
+        {
+            this.close();
+            throw e;
+        }
+        catch(final IOException | ExecutionException | RuntimeException e)
+        {
+            this.close();
+            return null;
+        }
+        finally
+        {
+            this.lock.unlock();
+        }
+    }
+
+    private String script(final SubprocessCommand command, final boolean discardOutput)
+    {
+        final StringBuilder script = new StringBuilder("( exec");
+        for(final String argument : command.getArguments())
+        {
+            script.append(" '").append(argument.replace("'", "'\\''")).append('\'');
+        }
+        script.append(" ) </dev/null");
+        if(discardOutput)
+        {
+            script.append(" >/dev/null 2>&1");
+        }
+        else if(command.getErrorOutput() == ErrorOutput.DISCARD)
+        {
+            script.append(" 2>/dev/null");
+        }
+        else
+        {
+            script.append(" 2>&1");
+        }
+        return script.append("; printf '\\n%s%d\\n' '")
+            .append(new String(this.marker, StandardCharsets.US_ASCII))
+            .append("' \"$?\"\n")
+            .toString();
+    }
+
+    /**
+     * Read output up to the marker that follows it. The marker is always preceded by a newline that is not part of
+     * the output, so the marker is only looked for at the start of a line.
+     */
+    @SuppressWarnings("checkstyle:CyclomaticComplexity")
+    private CompletedCommand read(final int limit) throws IOException
+    {
+        final StreamDrainer.Sink sink = new StreamDrainer.Sink(limit);
+        // the number of marker bytes matched at the start of the current line, or -1 when not at the start of a line
+        int matched = -1;
+        int read;
+        while((read = this.output.read()) != -1)
+        {
+            if(matched >= 0)
+            {
+                if(read == (this.marker[matched] & 0xFF))
+                {
+                    if(++matched == this.marker.length)
+                    {
+                        return new CompletedCommand(this.readExitCode(), sink.toCaptured());
+                    }
+                    continue;
+                }
+                sink.write('\n');
+                sink.write(this.marker, 0, matched);
+                matched = -1;
+            }
+            if(read == '\n')
+            {
+                matched = 0;
+            }
+            else
+            {
+                sink.write(read);
+            }
+        }
+        throw new EOFException("The shell exited unexpectedly.");
+    }
+
+    private int readExitCode() throws IOException
+    {
+        int exitCode = 0;
+        int read;
+        while((read = this.output.read()) != '\n')
+        {
+            if(read < '0' || read > '9')
+            {
+                throw new IOException("The shell wrote an unexpected exit code.");
+            }
+            exitCode = exitCode * 10 + read - '0';
+        }
+        return exitCode;
+    }
+
+    /**
+     * Kill the shell, and any command it is running.
+     */
+    @Override
+    public void close()
+    {
+        this.broken = true;
+        ProcessTrees.destroyForcibly(this.process);
+        ProcessRegistry.unregister(this.process);
+    }
+}
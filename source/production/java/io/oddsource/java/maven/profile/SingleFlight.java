@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+
+import org.apache.maven.model.building.ModelProblemCollector;
+import org.apache.maven.model.building.ModelProblemCollectorRequest;
+
+/**
+ * Coalesces concurrent identical work. When several threads (for example, with {@code mvn -T 16}) evaluate the same
+ * activation at the same moment, the first one does the work and the others wait for its result instead of doing it
+ * again. The problems the work reports are reported to every waiting caller as well, so that each model still gets
+ * its problems when the work fails. This is not a cache: once the work is done, the next caller does it again, so
+ * callers still cache results themselves (and check their cache inside the work, in case another thread finished
+ * just before).
+ *
+ * @param <K> The type of the key identifying the work
+ * @param <V> The type of the result of the work
+ */
+final class SingleFlight<K, V>
+{
+    private final ConcurrentMap<K, CompletableFuture<Flight<V>>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Do the work, or wait for the same work in progress on another thread.
+     *
+     * @param key The key identifying the work
+     * @param problems The caller's collector of problems
+     * @param work The work, given the collector to which it must report problems
+     * @return the result of the work, possibly done by another thread.
+     */
+    V execute(final K key, final ModelProblemCollector problems, final Function<ModelProblemCollector, V> work)
+    {
+        final CompletableFuture<Flight<V>> flight = new CompletableFuture<>();
+        final CompletableFuture<Flight<V>> leader = this.inFlight.putIfAbsent(key, flight);
+        if(leader == null)
+        {
+            return this.lead(key, flight, problems, work);
+        }
+
+        final Flight<V> completed;
+        try
+        {
+            completed = leader.get();
+        }
+        catch(final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            // the work reports the interruption to this caller
+            return work.apply(problems);
+        }
+        catch(final ExecutionException e)
+        {
+            // the work failed unexpectedly on the other thread, so it fails the same way here
+            return work.apply(problems);
+        }
+        completed.problems.forEach(problems::add);
+        return completed.result;
+    }
+
+    private V lead(
+        final K key,
+        final CompletableFuture<Flight<V>> flight,
+        final ModelProblemCollector problems,
+        final Function<ModelProblemCollector, V> work
+    )
+    {
+        final List<ModelProblemCollectorRequest> recorded = new ArrayList<>();
+        try
+        {
+            final V result = work.apply(request -> {
+                recorded.add(request);
+                problems.add(request);
+            });
+            flight.complete(new Flight<>(result, recorded));
+            return result;
+        }
+        catch(final RuntimeException | Error e)
+        {
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        finally
+        {
+            this.inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * The outcome of the work.
+     *
+     * @param <V> The type of the result of the work
+     */
+    private static final class Flight<V>
+    {
+        private final V result;
+
+        private final List<ModelProblemCollectorRequest> problems;
+
+        private Flight(final V result, final List<ModelProblemCollectorRequest> problems)
+        {
+            this.result = result;
+            this.problems = problems;
+        }
+    }
+}
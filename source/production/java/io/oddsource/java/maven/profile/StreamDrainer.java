@@ -0,0 +1,237 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The reader stage of subprocess execution. A process that writes more than the operating system's pipe buffer
+ * blocks until somebody reads its output, so output must be drained on another thread while the caller waits for
+ * the process to exit.
+ */
+final class StreamDrainer implements Callable<StreamDrainer.Captured>
+{
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(
+            runnable,
+            "finer-activator-output-reader-" + StreamDrainer.THREAD_COUNTER.incrementAndGet()
+        );
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final InputStream input;
+
+    private final int limit;
+
+    private StreamDrainer(final InputStream input, final int limit)
+    {
+        this.input = input;
+        this.limit = limit;
+    }
+
+    /**
+     * Start draining the stream on a reader thread. Bytes beyond the limit are still read, so that the process never
+     * blocks on a full pipe, but they are counted instead of kept.
+     *
+     * @param input The stream to drain, which is closed once it has been fully read
+     * @param limit The maximum number of bytes to keep
+     * @return a future that completes with the bytes kept from the stream.
+     */
+    static Future<Captured> drain(final InputStream input, final int limit)
+    {
+        return StreamDrainer.READERS.submit(new StreamDrainer(input, limit));
+    }
+
+    /**
+     * Start feeding the stream, line by line, to a matcher on a reader thread. Lines are fed in parts of at most
+     * {@link #BUFFER_SIZE} characters, so that even output without line breaks takes little memory.
+     *
+     * @param input The stream to read, which is closed once it has been fully read or a match has been found
+     * @param charset The charset with which to decode the stream
+     * @param matcher The matcher to feed
+     * @return a future that completes with {@code true} as soon as the matcher matches, or with {@code false} once
+     *     the stream has been fully read without a match.
+     */
+    static Future<Boolean> match(final InputStream input, final Charset charset, final LineMatcher matcher)
+    {
+        return StreamDrainer.READERS.submit(() -> {
+            try(InputStream stream = input; Reader reader = new InputStreamReader(stream, charset))
+            {
+                return StreamDrainer.feed(reader, matcher);
+            }
+        });
+    }
+
+    /**
+     * Feed what is read to a matcher, splitting lines where {@link java.io.BufferedReader#readLine()} would, at
+     * {@code \n}, {@code \r}, or {@code \r\n}.
+     */
+    @SuppressWarnings("checkstyle:CyclomaticComplexity") // 14, max allowed is 10, but line breaks can span reads
+    private static boolean feed(final Reader reader, final LineMatcher matcher) throws IOException
+    {
+        final char[] buffer = new char[StreamDrainer.BUFFER_SIZE];
+        boolean matched = false;
+        boolean lineStart = true;
+        // a \r that ended the previous read may be followed by the \n of the same line break
+        boolean carriageReturn = false;
+        int read;
+        while(!matched && (read = reader.read(buffer)) != -1)
+        {
+            int start = carriageReturn && buffer[0] == '\n' ? 1 : 0;
+            carriageReturn = false;
+            int i = start;
+            while(!matched && i < read)
+            {
+                final char c = buffer[i++];
+                if(c == '\n' || c == '\r')
+                {
+                    matched = matcher.feed(new String(buffer, start, i - 1 - start), lineStart);
+                    lineStart = true;
+                    if(c == '\r' && i < read && buffer[i] == '\n')
+                    {
+                        i++;
+                    }
+                    carriageReturn = c == '\r' && i == read;
+                    start = i;
+                }
+            }
+            // the rest of a line that continues in the next read
+            if(!matched && start < read)
+            {
+                matched = matcher.feed(new String(buffer, start, read - start), lineStart);
+                lineStart = false;
+            }
+            matched = matched || !reader.ready() && matcher.flush();
+        }
+        return matched || matcher.flush();
+    }
+
+    /**
+     * Run some other reading on a reader thread.
+     *
+     * @param reader The reading to run
+     * @param <T> The type of the result of the reading
+     * @return a future that completes with the result of the reading.
+     */
+    static <T> Future<T> submit(final Callable<T> reader)
+    {
+        return StreamDrainer.READERS.submit(reader);
+    }
+
+    @Override
+    public Captured call() throws IOException
+    {
+        try(InputStream stream = this.input)
+        {
+            final Sink sink = new Sink(this.limit);
+            final byte[] buffer = new byte[StreamDrainer.BUFFER_SIZE];
+            int read;
+            while((read = stream.read(buffer)) != -1)
+            {
+                sink.write(buffer, 0, read);
+            }
+            return sink.toCaptured();
+        }
+    }
+
+    /**
+     * Keeps bytes up to a limit, and counts the bytes beyond it.
+     */
+    static final class Sink
+    {
+        private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        private final int limit;
+
+        private long discarded;
+
+        Sink(final int limit)
+        {
+            this.limit = limit;
+        }
+
+        void write(final int b)
+        {
+            if(this.output.size() < this.limit)
+            {
+                this.output.write(b);
+            }
+            else
+            {
+                this.discarded++;
+            }
+        }
+
+        void write(final byte[] bytes, final int offset, final int length)
+        {
+            final int kept = Math.min(length, this.limit - this.output.size());
+            this.output.write(bytes, offset, kept);
+            this.discarded += length - kept;
+        }
+
+        Captured toCaptured()
+        {
+            return new Captured(this.output.toByteArray(), this.discarded);
+        }
+    }
+
+    /**
+     * The bytes kept from a drained stream.
+     */
+    static final class Captured
+    {
+        private final byte[] bytes;
+
+        private final long discarded;
+
+        private Captured(final byte[] bytes, final long discarded)
+        {
+            this.bytes = bytes;
+            this.discarded = discarded;
+        }
+
+        byte[] getBytes()
+        {
+            return this.bytes;
+        }
+
+        /**
+         * Get the number of bytes read beyond the limit.
+         *
+         * @return the number of bytes that were read but not kept, {@code 0} if the output was not truncated.
+         */
+        long getDiscarded()
+        {
+            return this.discarded;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Searches the contents of a file for a string as they are read, a chunk at a time, stopping at the first occurrence,
+ * so that a file whose contents contain the string near the beginning is hardly read at all. The contents are decoded
+ * exactly as {@link String#String(byte[], Charset)} would decode them, and the end of each chunk is kept for the next
+ * one, so that an occurrence that spans two chunks is found.
+ */
+final class StreamingContains
+{
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    // allocating and freeing a direct buffer is expensive, so each thread keeps one
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(
+        () -> ByteBuffer.allocateDirect(StreamingContains.CHUNK_SIZE)
+    );
+
+    private StreamingContains()
+    {
+    }
+
+    /**
+     * Search the contents of a channel.
+     *
+     * @param channel The channel, which is read to the end unless the string is found
+     * @param charset The charset of the contents
+     * @param needle The string, which must not be empty
+     * @return whether the contents contain the string.
+     * @throws IOException if the channel could not be read
+     */
+    static boolean contains(final ReadableByteChannel channel, final Charset charset, final String needle)
+        throws IOException
+    {
+        final CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer bytes = StreamingContains.BUFFERS.get();
+        bytes.clear();
+        final CharBuffer chars = CharBuffer.allocate(
+            (int) Math.ceil(StreamingContains.CHUNK_SIZE * (double) decoder.maxCharsPerByte()) + needle.length()
+        );
+
+        boolean endOfInput = false;
+        boolean flushed = false;
+        while(!flushed)
+        {
+            if(!endOfInput && bytes.hasRemaining())
+            {
+                endOfInput = channel.read(bytes) < 0;
+            }
+            bytes.flip();
+            CoderResult result = decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+            if(endOfInput && result.isUnderflow())
+            {
+                result = decoder.flush(chars);
+                flushed = result.isUnderflow();
+            }
+
+            chars.flip();
+            if(StreamingContains.indexOf(chars, needle) >= 0)
+            {
+                return true;
+            }
+            // the beginning of an occurrence that ends in the next chunk
+            final int kept = Math.min(needle.length() - 1, chars.remaining());
+            chars.position(chars.limit() - kept);
+            chars.compact();
+        }
+        return false;
+    }
+
+    private static int indexOf(final CharBuffer haystack, final String needle)
+    {
+        final char[] array = haystack.array();
+        final int start = haystack.arrayOffset() + haystack.position();
+        final int last = haystack.arrayOffset() + haystack.limit() - needle.length();
+        final char first = needle.charAt(0);
+        for(int i = start; i <= last; i++)
+        {
+            if(array[i] != first)
+            {
+                continue;
+            }
+            int j = 1;
+            while(j < needle.length() && array[i + j] == needle.charAt(j))
+            {
+                j++;
+            }
+            if(j == needle.length())
+            {
+                return i - start;
+            }
+        }
+        return -1;
+    }
+}
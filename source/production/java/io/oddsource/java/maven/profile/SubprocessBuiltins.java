@@ -0,0 +1,241 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Answers common probe commands (such as {@code uname -m}, {@code test -f file}, or {@code cat file}) from what the
+ * JVM already knows or can read from {@code /proc}, with the exit code and output the command would produce, so that
+ * no process has to be started. A builtin only answers when it is certain of the answer: the command must be found
+ * on the {@code PATH}, must produce no error output, and must not depend on anything the builtin cannot see. Anything
+ * else is executed as usual.
+ */
+final class SubprocessBuiltins
+{
+    private static final boolean LINUX = "Linux".equals(System.getProperty("os.name"));
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private SubprocessBuiltins()
+    {
+    }
+
+    /**
+     * Answer the command without executing it, if possible.
+     *
+     * @param command The command
+     * @param pathIndex The programs on the {@code PATH} of this JVM
+     * @return the exit code and output of the command, or {@code null} if the command must be executed.
+     */
+    @SuppressWarnings("checkstyle:ReturnCount")
+    static CompletedCommand evaluate(final SubprocessCommand command, final PathIndex pathIndex)
+    {
+        final List<String> arguments = command.getArguments();
+        if(arguments.isEmpty() || !SubprocessBuiltins.LINUX || !SubprocessBuiltins.isOnPath(command, pathIndex))
+        {
+            return null;
+        }
+        try
+        {
+            switch(arguments.get(0))
+            {
+                case "uname":
+                    return SubprocessBuiltins.uname(command);
+                case "hostname":
+                    return arguments.size() == 1 ?
+                        SubprocessBuiltins.line(command, SubprocessBuiltins.proc("/proc/sys/kernel/hostname")) :
+                        null;
+                case "nproc":
+                    return arguments.size() == 1 ? SubprocessBuiltins.nproc(command) : null;
+                case "id":
+                    return arguments.size() == 2 && "-u".equals(arguments.get(1)) ?
+                        SubprocessBuiltins.line(command, SubprocessBuiltins.status("Uid:", 1)) :
+                        null;
+                case "test":
+                    return SubprocessBuiltins.test(command);
+                case "cat":
+                    return arguments.size() == 2 ? SubprocessBuiltins.cat(command) : null;
+                default:
+                    return null;
+            }
+        }
+        catch(final IOException | RuntimeException e)
+        {
+            // the command knows better
+            return null;
+        }
+    }
+
+    private static CompletedCommand uname(final SubprocessCommand command) throws IOException
+    {
+        final List<String> arguments = command.getArguments();
+        final String option = arguments.size() == 1 ? "-s" : arguments.size() == 2 ? arguments.get(1) : "";
+        switch(option)
+        {
+            case "-s":
+                return SubprocessBuiltins.line(command, "Linux");
+            case "-r":
+                return SubprocessBuiltins.line(command, SubprocessBuiltins.proc("/proc/sys/kernel/osrelease"));
+            case "-n":
+                return SubprocessBuiltins.line(command, SubprocessBuiltins.proc("/proc/sys/kernel/hostname"));
+            case "-m":
+                // only architectures whose JVM name maps to exactly one kernel machine name
+                final String arch = System.getProperty("os.arch");
+                if("amd64".equals(arch) || "x86_64".equals(arch))
+                {
+                    return SubprocessBuiltins.line(command, "x86_64");
+                }
+                return "aarch64".equals(arch) ? SubprocessBuiltins.line(command, "aarch64") : null;
+            default:
+                return null;
+        }
+    }
+
+    private static CompletedCommand nproc(final SubprocessCommand command) throws IOException
+    {
+        final Map<String, String> environment = command.getEnvironment();
+        if(environment.containsKey("OMP_NUM_THREADS") || environment.containsKey("OMP_THREAD_LIMIT"))
+        {
+            return null;
+        }
+        // the processors this process (and so the command) may run on, which is what nproc counts
+        int count = 0;
+        for(final String range : SubprocessBuiltins.status("Cpus_allowed_list:", 0).split(","))
+        {
+            final int dash = range.indexOf('-');
+            count += dash < 0 ?
+                1 :
+                Integer.parseInt(range.substring(dash + 1)) - Integer.parseInt(range.substring(0, dash)) + 1;
+        }
+        return SubprocessBuiltins.line(command, Integer.toString(count));
+    }
+
+    private static CompletedCommand test(final SubprocessCommand command)
+    {
+        final List<String> arguments = command.getArguments();
+        if(arguments.size() != 3)
+        {
+            return null;
+        }
+        final File file = SubprocessBuiltins.resolve(command, arguments.get(2));
+        final boolean result;
+        switch(arguments.get(1))
+        {
+            case "-e":
+                result = file != null && file.exists();
+                break;
+            case "-f":
+                result = file != null && file.isFile();
+                break;
+            case "-d":
+                result = file != null && file.isDirectory();
+                break;
+            case "-x":
+                result = file != null && file.canExecute();
+                break;
+            default:
+                return null;
+        }
+        return new CompletedCommand(result ? 0 : 1, new StreamDrainer.Sink(0).toCaptured());
+    }
+
+    private static CompletedCommand cat(final SubprocessCommand command) throws IOException
+    {
+        final File file = SubprocessBuiltins.resolve(command, command.getArguments().get(1));
+        if(file == null || !file.isFile() || !file.canRead())
+        {
+            // cat reports the problem on its error output
+            return null;
+        }
+        final StreamDrainer.Sink sink = new StreamDrainer.Sink(command.getOutputLimit());
+        try(InputStream input = Files.newInputStream(file.toPath()))
+        {
+            final byte[] buffer = new byte[SubprocessBuiltins.BUFFER_SIZE];
+            int read;
+            while((read = input.read(buffer)) != -1)
+            {
+                sink.write(buffer, 0, read);
+            }
+        }
+        return new CompletedCommand(0, sink.toCaptured());
+    }
+
+    private static CompletedCommand line(final SubprocessCommand command, final String line)
+    {
+        final StreamDrainer.Sink sink = new StreamDrainer.Sink(command.getOutputLimit());
+        final ByteBuffer bytes = command.getCharset().encode(line + "\n");
+        sink.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        return new CompletedCommand(0, sink.toCaptured());
+    }
+
+    private static String proc(final String file) throws IOException
+    {
+        return new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Get a field of a line of {@code /proc/self/status}, which describes the JVM process, from which the command
+     * would inherit it.
+     */
+    private static String status(final String name, final int field) throws IOException
+    {
+        for(final String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8))
+        {
+            if(line.startsWith(name))
+            {
+                return line.substring(name.length()).trim().split("\\s+")[field];
+            }
+        }
+        throw new IOException(name + " not found");
+    }
+
+    /**
+     * Resolve a file name against the working directory of the command.
+     *
+     * @return the file, or {@code null} if the name is empty, which names no file (not the working directory).
+     */
+    private static File resolve(final SubprocessCommand command, final String fileName)
+    {
+        if(fileName.isEmpty())
+        {
+            return null;
+        }
+        final File file = new File(fileName);
+        return file.isAbsolute() ? file : new File(command.getDirectory(), fileName);
+    }
+
+    /**
+     * The program must exist for its output to be known; otherwise, starting it fails, and that must be reported.
+     * Only commands with the {@code PATH} of this JVM, which the index was made from, can be looked up.
+     */
+    private static boolean isOnPath(final SubprocessCommand command, final PathIndex pathIndex)
+    {
+        final String program = command.getArguments().get(0);
+        final String path = command.getEnvironment().get("PATH");
+        return path != null && path.equals(System.getenv("PATH")) && program.indexOf('/') < 0 &&
+               pathIndex.find(program) != null;
+    }
+}
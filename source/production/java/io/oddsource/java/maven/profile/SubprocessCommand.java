@@ -0,0 +1,230 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Everything that determines the result of executing a subprocess, used both to start the process and as the key
+ * under which its result is cached for the session. The timeout is not part of the key: it limits how long the
+ * process may take, but does not change the result of a process that completes.
+ */
+final class SubprocessCommand
+{
+    private final List<String> arguments;
+
+    private final Charset charset;
+
+    private final File directory;
+
+    private final Map<String, String> environment;
+
+    private final ErrorOutput errorOutput;
+
+    private final int outputLimit;
+
+    private final long timeout;
+
+    private final long executableModified;
+
+    private final int hashCode;
+
+    SubprocessCommand(
+        final List<String> arguments,
+        final Charset charset,
+        final ErrorOutput errorOutput,
+        final int outputLimit,
+        final long timeout
+    )
+    {
+        this(
+            arguments,
+            charset,
+            new File("").getAbsoluteFile(),
+            System.getenv(),
+            errorOutput,
+            outputLimit,
+            timeout,
+            0
+        );
+    }
+
+    @SuppressWarnings("checkstyle:ParameterNumber")
+    private SubprocessCommand(
+        final List<String> arguments,
+        final Charset charset,
+        final File directory,
+        final Map<String, String> environment,
+        final ErrorOutput errorOutput,
+        final int outputLimit,
+        final long timeout,
+        final long executableModified
+    )
+    {
+        this.arguments = Collections.unmodifiableList(arguments);
+        this.charset = charset;
+        this.directory = directory;
+        this.environment = environment;
+        this.errorOutput = errorOutput;
+        this.outputLimit = outputLimit;
+        this.timeout = timeout;
+        this.executableModified = executableModified;
+        this.hashCode = Objects.hash(
+            arguments,
+            charset,
+            directory,
+            environment,
+            errorOutput,
+            outputLimit,
+            executableModified
+        );
+    }
+
+    List<String> getArguments()
+    {
+        return this.arguments;
+    }
+
+    Charset getCharset()
+    {
+        return this.charset;
+    }
+
+    File getDirectory()
+    {
+        return this.directory;
+    }
+
+    Map<String, String> getEnvironment()
+    {
+        return this.environment;
+    }
+
+    ErrorOutput getErrorOutput()
+    {
+        return this.errorOutput;
+    }
+
+    int getOutputLimit()
+    {
+        return this.outputLimit;
+    }
+
+    /**
+     * Get the same command with a different timeout, which is equal to this command.
+     *
+     * @param newTimeout The timeout in nanoseconds
+     * @return the command.
+     */
+    SubprocessCommand withTimeout(final long newTimeout)
+    {
+        return newTimeout == this.timeout ? this : new SubprocessCommand(
+            this.arguments,
+            this.charset,
+            this.directory,
+            this.environment,
+            this.errorOutput,
+            this.outputLimit,
+            newTimeout,
+            this.executableModified
+        );
+    }
+
+    /**
+     * Get the same command with different arguments, executing a program whose result depends on which version of it
+     * is installed. The modification time of the program is part of the key, so that a result is not reused after the
+     * program is upgraded.
+     *
+     * @param newArguments The arguments, the first of which is the absolute path of the program
+     * @param modified The modification time of the program, in milliseconds since the epoch
+     * @return the command.
+     */
+    SubprocessCommand withExecutable(final List<String> newArguments, final long modified)
+    {
+        return new SubprocessCommand(
+            newArguments,
+            this.charset,
+            this.directory,
+            this.environment,
+            this.errorOutput,
+            this.outputLimit,
+            this.timeout,
+            modified
+        );
+    }
+
+    /**
+     * Get the modification time of the program.
+     *
+     * @return the modification time in milliseconds since the epoch, or {@code 0} if the result of this command is not
+     *     tied to a particular version of the program.
+     */
+    long getExecutableModified()
+    {
+        return this.executableModified;
+    }
+
+    /**
+     * Get how long the process may run.
+     *
+     * @return the timeout in nanoseconds.
+     */
+    long getTimeout()
+    {
+        return this.timeout;
+    }
+
+    @Override
+    public boolean equals(final Object other)
+    {
+        if(this == other)
+        {
+            return true;
+        }
+        if(!(other instanceof SubprocessCommand))
+        {
+            return false;
+        }
+        final SubprocessCommand command = (SubprocessCommand) other;
+        return this.hashCode == command.hashCode &&
+               this.arguments.equals(command.arguments) &&
+               this.charset.equals(command.charset) &&
+               this.directory.equals(command.directory) &&
+               this.environment.equals(command.environment) &&
+               this.errorOutput == command.errorOutput &&
+               this.outputLimit == command.outputLimit &&
+               this.executableModified == command.executableModified;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return this.hashCode;
+    }
+
+    @Override
+    public String toString()
+    {
+        return Arrays.toString(this.arguments.toArray());
+    }
+}
@@ -16,12 +16,16 @@
 
 package io.oddsource.java.maven.profile;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
 import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.Profile;
 import org.apache.maven.model.building.ModelProblemCollector;
+import org.apache.maven.model.profile.ProfileActivationContext;
 import org.codehaus.plexus.logging.Logger;
 
 /**
@@ -36,15 +40,18 @@ public class SubprocessExitCodeActivator extends BaseSubprocessActivator
 {
     private static final String BRACKET_NAME = "SUBPROCESS.EXIT";
 
+    private final Map<String, Long> expectedExitCodes = new ConcurrentHashMap<>();
+
     /**
      * Construct a SubprocessExitCodeActivator.
      *
      * @param logger A Maven logger, auto-injected by Maven
+     * @param session The activation session, auto-injected by Maven
      */
     @Inject
-    public SubprocessExitCodeActivator(final Logger logger)
+    public SubprocessExitCodeActivator(final Logger logger, final ActivationSession session)
     {
-        super(logger);
+        super(logger, session);
     }
 
     @Override
@@ -53,6 +60,26 @@ public class SubprocessExitCodeActivator extends BaseSubprocessActivator
         return SubprocessExitCodeActivator.BRACKET_NAME;
     }
 
+    @Override
+    public boolean isActive(
+        final String unparsedCommandString,
+        final ActivationProperty property,
+        final Profile profile,
+        final ProfileActivationContext context,
+        final ModelProblemCollector problems
+    )
+    {
+        // an unusable value is reported before the process is started, not after
+        return this.getExpectedExitCode(property, problems) != null &&
+               super.isActive(unparsedCommandString, property, profile, context, problems);
+    }
+
+    @Override
+    boolean needsOutput()
+    {
+        return false;
+    }
+
     @Override
     protected boolean processResultMatches(
         final int exitCode,
@@ -61,17 +88,29 @@ public class SubprocessExitCodeActivator extends BaseSubprocessActivator
         final ModelProblemCollector problems
     )
     {
-        final long expectedExitCode;
-        try
-        {
-            expectedExitCode = Long.parseLong(property.getValue());
-        }
-        catch(final NumberFormatException e)
+        final Long expectedExitCode = this.getExpectedExitCode(property, problems);
+        return expectedExitCode != null && exitCode == expectedExitCode;
+    }
+
+    private Long getExpectedExitCode(final ActivationProperty property, final ModelProblemCollector problems)
+    {
+        final String value = property.getValue();
+        Long expectedExitCode = value == null ? null : this.expectedExitCodes.get(value);
+        if(expectedExitCode == null)
         {
-            return Utilities.problem(problems, property,
-                "The property 'value' ('" + property.getValue() + "') could not be converted to a long."
-            );
+            try
+            {
+                expectedExitCode = Long.parseLong(value);
+            }
+            catch(final NumberFormatException e)
+            {
+                Utilities.problem(problems, property,
+                    "The property 'value' ('" + value + "') could not be converted to a long."
+                );
+                return null;
+            }
+            this.expectedExitCodes.put(value, expectedExitCode);
         }
-        return exitCode == expectedExitCode;
+        return expectedExitCode;
     }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A subprocess that could not be executed or did not complete in time, remembered for the session so that the same
+ * command is not executed (and waited for) again by every model, and its problem is reported only once.
+ */
+final class SubprocessFailure
+{
+    private final String message;
+
+    private final long timeout;
+
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    /**
+     * Construct a SubprocessFailure.
+     *
+     * @param message The problem to report
+     * @param timeout The timeout (in nanoseconds) the command exceeded, or {@link Long#MAX_VALUE} if the command failed
+     *     regardless of its timeout
+     */
+    SubprocessFailure(final String message, final long timeout)
+    {
+        this.message = message;
+        this.timeout = timeout;
+    }
+
+    String getMessage()
+    {
+        return this.message;
+    }
+
+    long getTimeout()
+    {
+        return this.timeout;
+    }
+
+    /**
+     * Indicates whether executing the command would fail the same way.
+     *
+     * @param command The command
+     * @return whether the command would fail, which is not known if it would be given more time than it had.
+     */
+    boolean appliesTo(final SubprocessCommand command)
+    {
+        return command.getTimeout() <= this.timeout;
+    }
+
+    /**
+     * Claim the reporting of the problem.
+     *
+     * @return {@code true} the first time only.
+     */
+    boolean claimReport()
+    {
+        return this.reported.compareAndSet(false, true);
+    }
+}
@@ -39,11 +39,12 @@ public class SubprocessOutputActivator extends BaseSubprocessActivator implement
      * Construct a SubprocessOutputActivator.
      *
      * @param logger A Maven logger, auto-injected by Maven
+     * @param session The activation session, auto-injected by Maven
      */
     @Inject
-    public SubprocessOutputActivator(final Logger logger)
+    public SubprocessOutputActivator(final Logger logger, final ActivationSession session)
     {
-        super(logger);
+        super(logger, session);
     }
 
     @Override
@@ -62,4 +63,50 @@ public class SubprocessOutputActivator extends BaseSubprocessActivator implement
     {
         return this.match(output, property);
     }
+
+    @Override
+    LineMatcher newLineMatcher(final ActivationProperty property)
+    {
+        return new ContainsLineMatcher(property.getValue());
+    }
+
+    /**
+     * Keeps only as much of the output as a match that straddles a line break, or the parts of a long line, could
+     * need.
+     */
+    private static final class ContainsLineMatcher implements LineMatcher
+    {
+        private final String value;
+
+        private final StringBuilder tail = new StringBuilder();
+
+        private boolean first = true;
+
+        private ContainsLineMatcher(final String value)
+        {
+            this.value = value;
+        }
+
+        @Override
+        public boolean feed(final String part, final boolean lineStart)
+        {
+            if(lineStart && !this.first)
+            {
+                this.tail.append('\n');
+            }
+            this.first = false;
+            this.tail.append(part);
+
+            // like StringContainsHelperMixin, empty output never matches, even an empty value
+            if(this.tail.length() > 0 && this.tail.indexOf(this.value) >= 0)
+            {
+                return true;
+            }
+            if(this.tail.length() >= this.value.length())
+            {
+                this.tail.delete(0, this.tail.length() - this.value.length() + 1);
+            }
+            return false;
+        }
+    }
 }
@@ -16,6 +16,9 @@
 
 package io.oddsource.java.maven.profile;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Singleton;
@@ -36,15 +39,18 @@ public class SubprocessRegexActivator extends BaseSubprocessActivator implements
 {
     private static final String BRACKET_NAME = "SUBPROCESS.REGEX";
 
+    private static final int WINDOW = 65536;
+
     /**
      * Construct a SubprocessRegexActivator.
      *
      * @param logger A Maven logger, auto-injected by Maven
+     * @param session The activation session, auto-injected by Maven
      */
     @Inject
-    public SubprocessRegexActivator(final Logger logger)
+    public SubprocessRegexActivator(final Logger logger, final ActivationSession session)
     {
-        super(logger);
+        super(logger, session);
     }
 
     @Override
@@ -63,4 +69,88 @@ public class SubprocessRegexActivator extends BaseSubprocessActivator implements
     {
         return this.match(output, property, problems);
     }
+
+    @Override
+    LineMatcher newLineMatcher(final ActivationProperty property)
+    {
+        try
+        {
+            return new WindowedLineMatcher(Pattern.compile(property.getValue(), Pattern.MULTILINE));
+        }
+        catch(final PatternSyntaxException e)
+        {
+            // fall back to matching the complete output, which reports the problem
+            return null;
+        }
+    }
+
+    /**
+     * Matches against a sliding window of the most recent whole lines, so a match must fit within roughly half of
+     * {@link #WINDOW} characters. While output arrives quickly, lines are examined in batches of that size so that
+     * the total work stays proportional to the size of the output. A line longer than that is cut, keeping the
+     * character before the window, so that it is still known not to start a line.
+     */
+    private static final class WindowedLineMatcher implements LineMatcher
+    {
+        private static final int BATCH = SubprocessRegexActivator.WINDOW / 2;
+
+        private final Matcher matcher;
+
+        private final StringBuilder window = new StringBuilder();
+
+        private long length = -1;
+
+        private int pending;
+
+        // whether the window starts with the character before it, which was cut from the middle of a line
+        private boolean cut;
+
+        private WindowedLineMatcher(final Pattern pattern)
+        {
+            // so that the character before a cut window is seen, but not matched
+            this.matcher = pattern.matcher("").useTransparentBounds(true).useAnchoringBounds(false);
+        }
+
+        @Override
+        public boolean feed(final String part, final boolean lineStart)
+        {
+            final int lineBreak = lineStart ? 1 : 0;
+            if(lineStart && this.length >= 0)
+            {
+                this.window.append('\n');
+            }
+            this.window.append(part);
+            this.length += part.length() + lineBreak;
+            this.pending += part.length() + lineBreak;
+
+            return this.pending >= WindowedLineMatcher.BATCH && this.flush();
+        }
+
+        @Override
+        public boolean flush()
+        {
+            // like RegexHelperMixin, empty output never matches
+            if(this.pending == 0 || this.length <= 0)
+            {
+                return false;
+            }
+            this.pending = 0;
+            this.matcher.reset(this.window);
+            if(this.cut)
+            {
+                this.matcher.region(1, this.window.length());
+            }
+            if(this.matcher.find())
+            {
+                return true;
+            }
+            if(this.window.length() > WindowedLineMatcher.BATCH)
+            {
+                final int lineBreak = this.window.indexOf("\n", this.window.length() - WindowedLineMatcher.BATCH);
+                this.cut = lineBreak < 0;
+                this.window.delete(0, this.cut ? this.window.length() - WindowedLineMatcher.BATCH - 1 : lineBreak + 1);
+            }
+            return false;
+        }
+    }
 }
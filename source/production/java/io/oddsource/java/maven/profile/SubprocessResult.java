@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+/**
+ * The exit code and decoded output of a completed subprocess. The output is {@code null} if the process was executed
+ * only for its exit code and its output was discarded.
+ */
+final class SubprocessResult
+{
+    private final int exitCode;
+
+    private final String output;
+
+    SubprocessResult(final int exitCode, final String output)
+    {
+        this.exitCode = exitCode;
+        this.output = output;
+    }
+
+    int getExitCode()
+    {
+        return this.exitCode;
+    }
+
+    String getOutput()
+    {
+        return this.output;
+    }
+
+    boolean hasOutput()
+    {
+        return this.output != null;
+    }
+}
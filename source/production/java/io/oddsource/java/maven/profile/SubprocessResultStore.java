@@ -0,0 +1,370 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Subprocess results that outlive the build, so that a slow command (such as {@code docker info}) is not executed
+ * again by every invocation of Maven. Results are appended to a file of compact records, which is read into memory
+ * once per session and rewritten without stale records when they take up most of it. Every access to the file holds a
+ * lock on a separate lock file, so that concurrent builds can share it.
+ *
+ * <p>Results are keyed by everything in the {@link SubprocessCommand} that determines the result, except that only
+ * the {@code PATH} of its environment is used, together with a fingerprint of the machine and user. A result is used
+ * only while it is younger than the time to live given when reading it.
+ */
+final class SubprocessResultStore
+{
+    static final String FILE_NAME = "subprocess-results.bin";
+
+    private static final String LOCK_FILE_NAME = "subprocess-results.lock";
+
+    private static final int MAGIC = 0x46504131;
+
+    private static final int HEADER_SIZE = 4;
+
+    private static final int COMPACTION_THRESHOLD = 64 * 1024;
+
+    private static final Object LOCK = new Object();
+
+    private static final String FINGERPRINT = String.join(
+        "\u0000",
+        System.getProperty("os.name"),
+        System.getProperty("os.version"),
+        System.getProperty("os.arch"),
+        System.getProperty("user.name"),
+        SubprocessResultStore.hostName()
+    );
+
+    private final Path file;
+
+    private final Path lockFile;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private SubprocessResultStore(final Path directory)
+    {
+        this.file = directory.resolve(SubprocessResultStore.FILE_NAME);
+        this.lockFile = directory.resolve(SubprocessResultStore.LOCK_FILE_NAME);
+    }
+
+    /**
+     * Read the stored results. A file that cannot be read results in an empty store, whose results are still written.
+     *
+     * @param directory The directory containing the file
+     * @param clear Whether to delete all stored results first
+     * @param timeToLive Results older than this (in nanoseconds) are dropped when the file is rewritten
+     * @return the store.
+     */
+    static SubprocessResultStore open(final Path directory, final boolean clear, final long timeToLive)
+    {
+        final SubprocessResultStore store = new SubprocessResultStore(directory);
+        try
+        {
+            store.load(clear, timeToLive);
+        }
+        catch(final IOException e)
+        {
+            store.entries.clear();
+        }
+        return store;
+    }
+
+    /**
+     * Get a stored result.
+     *
+     * @param command The command
+     * @param needsOutput Whether a result without output is of no use
+     * @param timeToLive How old (in nanoseconds) the result may be
+     * @return the result, or {@code null} if there is no suitable result.
+     */
+    SubprocessResult get(final SubprocessCommand command, final boolean needsOutput, final long timeToLive)
+    {
+        final Entry entry = this.entries.get(SubprocessResultStore.key(command));
+        if(entry == null || !entry.isFresh(timeToLive) || needsOutput && !entry.result.hasOutput())
+        {
+            return null;
+        }
+        return entry.result;
+    }
+
+    /**
+     * Store a result, both for this session and in the file.
+     *
+     * @param command The command
+     * @param result The result of the command
+     * @param timeToLive How long (in nanoseconds) a stored result with output is kept instead of this one
+     * @throws IOException if the file could not be written
+     */
+    void put(final SubprocessCommand command, final SubprocessResult result, final long timeToLive)
+        throws IOException
+    {
+        final String key = SubprocessResultStore.key(command);
+        final Entry entry = new Entry(System.currentTimeMillis(), result);
+        final Entry existing = this.entries.get(key);
+        // a result with output also serves activators that need only the exit code, so it is not replaced
+        if(existing != null && existing.isFresh(timeToLive) && existing.result.hasOutput() && !result.hasOutput())
+        {
+            return;
+        }
+        this.entries.put(key, entry);
+
+        final byte[] record = SubprocessResultStore.encode(key, entry);
+        synchronized(SubprocessResultStore.LOCK)
+        {
+            try(FileChannel lock = this.lock())
+            {
+                // released when the channel is closed
+                lock.lock();
+                try(FileChannel channel = FileChannel.open(
+                    this.file,
+                    StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND
+                ))
+                {
+                    if(channel.size() == 0)
+                    {
+                        SubprocessResultStore.writeFully(channel, SubprocessResultStore.header());
+                    }
+                    SubprocessResultStore.writeFully(channel, ByteBuffer.wrap(record));
+                }
+            }
+        }
+    }
+
+    private void load(final boolean clear, final long timeToLive) throws IOException
+    {
+        synchronized(SubprocessResultStore.LOCK)
+        {
+            try(FileChannel lock = this.lock())
+            {
+                // released when the channel is closed
+                lock.lock();
+                if(clear)
+                {
+                    Files.deleteIfExists(this.file);
+                    return;
+                }
+
+                final ByteBuffer buffer;
+                try
+                {
+                    buffer = ByteBuffer.wrap(Files.readAllBytes(this.file));
+                }
+                catch(final NoSuchFileException e)
+                {
+                    return;
+                }
+                final boolean valid = buffer.remaining() >= SubprocessResultStore.HEADER_SIZE &&
+                                      buffer.getInt() == SubprocessResultStore.MAGIC;
+                int records = 0;
+                while(valid && buffer.hasRemaining() && this.readRecord(buffer))
+                {
+                    records++;
+                }
+
+                // a record that was cut short (by a crash) or a file of another format would hide what comes after
+                // it, and stale records make the file slower to read, so the file is rewritten with what remains
+                this.entries.values().removeIf(entry -> !entry.isFresh(timeToLive));
+                if(!valid || buffer.hasRemaining() ||
+                   buffer.capacity() > SubprocessResultStore.COMPACTION_THRESHOLD && records > 2 * this.entries.size())
+                {
+                    this.rewrite();
+                }
+            }
+        }
+    }
+
+    private boolean readRecord(final ByteBuffer buffer)
+    {
+        final int start = buffer.position();
+        try
+        {
+            final long writtenAt = buffer.getLong();
+            final String key = SubprocessResultStore.readString(buffer);
+            final int exitCode = buffer.getInt();
+            final String output = buffer.get() == 0 ? null : SubprocessResultStore.readString(buffer);
+            this.entries.put(key, new Entry(writtenAt, new SubprocessResult(exitCode, output)));
+            return true;
+        }
+        catch(final RuntimeException e)
+        {
+            buffer.position(start);
+            return false;
+        }
+    }
+
+    private void rewrite() throws IOException
+    {
+        final Path temporary = Files.createTempFile(this.file.getParent(), SubprocessResultStore.FILE_NAME, ".tmp");
+        try
+        {
+            try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE))
+            {
+                SubprocessResultStore.writeFully(channel, SubprocessResultStore.header());
+                for(final Map.Entry<String, Entry> entry : this.entries.entrySet())
+                {
+                    SubprocessResultStore.writeFully(
+                        channel,
+                        ByteBuffer.wrap(SubprocessResultStore.encode(entry.getKey(), entry.getValue()))
+                    );
+                }
+            }
+            Files.move(temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private FileChannel lock() throws IOException
+    {
+        Files.createDirectories(this.lockFile.getParent());
+        return FileChannel.open(this.lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private static String key(final SubprocessCommand command)
+    {
+        final StringBuilder key = new StringBuilder(SubprocessResultStore.FINGERPRINT)
+            .append('\u0000').append(command.getEnvironment().get("PATH"))
+            .append('\u0000').append(command.getDirectory())
+            .append('\u0000').append(command.getCharset().name())
+            .append('\u0000').append(command.getErrorOutput())
+            .append('\u0000').append(command.getOutputLimit())
+            .append('\u0000').append(command.getExecutableModified());
+        for(final String argument : command.getArguments())
+        {
+            key.append('\u0000').append(argument);
+        }
+        return key.toString();
+    }
+
+    private static byte[] encode(final String key, final Entry entry) throws IOException
+    {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try(DataOutputStream output = new DataOutputStream(bytes))
+        {
+            output.writeLong(entry.writtenAt);
+            SubprocessResultStore.writeString(output, key);
+            output.writeInt(entry.result.getExitCode());
+            output.writeBoolean(entry.result.hasOutput());
+            if(entry.result.hasOutput())
+            {
+                SubprocessResultStore.writeString(output, entry.result.getOutput());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException
+    {
+        // unlike writeUTF, not limited to 64 KiB
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final ByteBuffer buffer)
+    {
+        final int length = buffer.getInt();
+        if(length < 0 || length > buffer.remaining())
+        {
+            throw new IllegalArgumentException();
+        }
+        final String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static ByteBuffer header()
+    {
+        final ByteBuffer header = ByteBuffer.allocate(SubprocessResultStore.HEADER_SIZE);
+        header.putInt(SubprocessResultStore.MAGIC).flip();
+        return header;
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException
+    {
+        while(buffer.hasRemaining())
+        {
+            channel.write(buffer);
+        }
+    }
+
+    private static String hostName()
+    {
+        final String name = System.getenv("COMPUTERNAME") != null ?
+            System.getenv("COMPUTERNAME") :
+            System.getenv("HOSTNAME");
+        if(name != null)
+        {
+            return name;
+        }
+        // unlike InetAddress.getLocalHost(), these cannot wait for a name server
+        for(final String file : new String[] {"/proc/sys/kernel/hostname", "/etc/hostname"})
+        {
+            try
+            {
+                return new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8).trim();
+            }
+            catch(final IOException | SecurityException e)
+            {
+                // try the next one
+            }
+        }
+        return "";
+    }
+
+    /**
+     * A stored result and when it was stored.
+     */
+    private static final class Entry
+    {
+        private final long writtenAt;
+
+        private final SubprocessResult result;
+
+        private Entry(final long writtenAt, final SubprocessResult result)
+        {
+            this.writtenAt = writtenAt;
+            this.result = result;
+        }
+
+        private boolean isFresh(final long timeToLive)
+        {
+            final long age = System.currentTimeMillis() - this.writtenAt;
+            return age >= 0 && age < TimeUnit.NANOSECONDS.toMillis(timeToLive);
+        }
+    }
+}
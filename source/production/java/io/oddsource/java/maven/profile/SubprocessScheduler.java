@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.maven.profile;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.building.ModelProblemCollector;
+import org.apache.maven.model.profile.ProfileActivationContext;
+
+/**
+ * Limits how many activation subprocesses run at the same time, so that many threads evaluating activations (or many
+ * builds sharing a Maven daemon) cannot start an unbounded number of processes. Waiting executions are started in the
+ * order in which they arrived, and the time they spend waiting is recorded. The limit is configured with the
+ * {@code finer.activator.subprocess.maxConcurrent} property once per session, by the first activation that runs a
+ * subprocess.
+ */
+final class SubprocessScheduler implements UserPropertiesHelperMixin
+{
+    static final int DEFAULT_LIMIT = Runtime.getRuntime().availableProcessors();
+
+    private static final String MAX_CONCURRENT = "finer.activator.subprocess.maxConcurrent";
+
+    private final ResizableSemaphore permits = new ResizableSemaphore(SubprocessScheduler.DEFAULT_LIMIT);
+
+    private volatile int limit = SubprocessScheduler.DEFAULT_LIMIT;
+
+    private volatile boolean configured;
+
+    private final LongAdder executions = new LongAdder();
+
+    private final LongAdder delayedExecutions = new LongAdder();
+
+    private final LongAdder totalWait = new LongAdder();
+
+    private final AtomicLong longestWait = new AtomicLong();
+
+    private final AtomicLong longestQueue = new AtomicLong();
+
+    /**
+     * Configure the limit for the session, unless it has been configured already. An invalid limit is reported (and
+     * the default limit used) once per session.
+     *
+     * @param context The profile activation context
+     * @param property The property being evaluated
+     * @param problems A collector of problems
+     * @return whether the limit is valid, or was configured already; if not, the activation is inactive.
+     */
+    boolean configure(
+        final ProfileActivationContext context,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        if(this.configured)
+        {
+            return true;
+        }
+        synchronized(this)
+        {
+            if(this.configured)
+            {
+                return true;
+            }
+            final String value = this.getUserOrSystemProperty(SubprocessScheduler.MAX_CONCURRENT, context);
+            int newLimit = SubprocessScheduler.DEFAULT_LIMIT;
+            boolean valid = true;
+            if(value != null && !value.isEmpty())
+            {
+                try
+                {
+                    newLimit = Integer.parseInt(value);
+                }
+                catch(final NumberFormatException e)
+                {
+                    newLimit = 0;
+                }
+                valid = newLimit > 0;
+            }
+            this.setLimit(valid ? newLimit : SubprocessScheduler.DEFAULT_LIMIT);
+            // a problem reported while prefetching would be lost, so the first evaluation that can report it does
+            if(valid || problems != BaseFinerActivator.PREFETCH_PROBLEMS)
+            {
+                this.configured = true;
+            }
+            if(!valid)
+            {
+                Utilities.problem(problems, property,
+                    "The property '" + SubprocessScheduler.MAX_CONCURRENT + "' ('" + value +
+                    "') must be a positive number."
+                );
+            }
+            return valid;
+        }
+    }
+
+    /**
+     * Change the maximum number of subprocesses that may run at the same time. Processes that are already running
+     * are not affected.
+     *
+     * @param newLimit The new limit, which must be positive
+     */
+    private void setLimit(final int newLimit)
+    {
+        if(newLimit > this.limit)
+        {
+            this.permits.release(newLimit - this.limit);
+        }
+        else if(newLimit < this.limit)
+        {
+            this.permits.reducePermits(this.limit - newLimit);
+        }
+        this.limit = newLimit;
+    }
+
+    /**
+     * Wait until a subprocess may be started. Every call must be followed by a call to {@link #release()} once the
+     * subprocess has completed or been killed.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    void acquire() throws InterruptedException
+    {
+        // unlike tryAcquire(), a zero timeout respects the queue of waiting executions
+        if(this.permits.tryAcquire(0, TimeUnit.NANOSECONDS))
+        {
+            this.executions.increment();
+            return;
+        }
+
+        final long start = System.nanoTime();
+        this.longestQueue.accumulateAndGet(this.permits.getQueueLength() + 1, Math::max);
+        this.permits.acquire();
+        final long wait = System.nanoTime() - start;
+        this.executions.increment();
+        this.delayedExecutions.increment();
+        this.totalWait.add(wait);
+        this.longestWait.accumulateAndGet(wait, Math::max);
+    }
+
+    /**
+     * Allow another subprocess to start.
+     */
+    void release()
+    {
+        this.permits.release();
+    }
+
+    /**
+     * Describe how much waiting the limit caused since the statistics were last reset.
+     *
+     * @return the description.
+     */
+    String getStatistics()
+    {
+        return this.executions.sum() + " subprocesses executed with at most " + this.limit + " at a time; " +
+               this.delayedExecutions.sum() + " waited a total of " +
+               TimeUnit.NANOSECONDS.toMillis(this.totalWait.sum()) + " ms (longest " +
+               TimeUnit.NANOSECONDS.toMillis(this.longestWait.get()) + " ms, at most " + this.longestQueue.get() +
+               " waiting at once).";
+    }
+
+    /**
+     * Forget the statistics and the configured limit, at the start (or end) of a session.
+     */
+    void reset()
+    {
+        this.configured = false;
+        this.executions.reset();
+        this.delayedExecutions.reset();
+        this.totalWait.reset();
+        this.longestWait.set(0);
+        this.longestQueue.set(0);
+    }
+
+    /**
+     * A fair semaphore whose number of permits can be reduced.
+     */
+    private static final class ResizableSemaphore extends Semaphore
+    {
+        private static final long serialVersionUID = 1L;
+
+        private ResizableSemaphore(final int permits)
+        {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(final int reduction)
+        {
+            super.reducePermits(reduction);
+        }
+    }
+}
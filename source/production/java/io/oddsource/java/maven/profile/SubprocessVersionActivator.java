@@ -0,0 +1,226 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.oddsource.java.maven.profile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.Profile;
+import org.apache.maven.model.building.ModelProblemCollector;
+import org.apache.maven.model.profile.ProfileActivationContext;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Run the program indicated by the property name with {@code --version} (or the command indicated by the property
+ * name, if it has arguments), and test that the first version in its output is within the Maven version range, such
+ * as {@code [3.10,4)}, or starts with the version, such as {@code 3.10}, contained in the property value. The program
+ * is found on the {@code PATH} without executing anything, and a program that is not installed has no version. The
+ * command is executed at most once per session for each version of the program (as told by its modification time),
+ * and the version is parsed once per session.
+ *
+ * @since 1.0.0
+ */
+@Named("propertySubprocessVersionActivator")
+@Singleton
+public class SubprocessVersionActivator extends BaseSubprocessActivator
+{
+    private static final String BRACKET_NAME = "SUBPROCESS.VERSION";
+
+    private static final String VERSION_OPTION = "--version";
+
+    private static final Pattern DOTTED_VERSION = Pattern.compile(
+        "[0-9]+(?:\\.[0-9]+)+(?:[-+][0-9A-Za-z.-]*[0-9A-Za-z])?"
+    );
+
+    private static final Pattern NUMBER = Pattern.compile("[0-9]+");
+
+    private final ActivationSession session;
+
+    private final Map<String, Predicate<ArtifactVersion>> expectedVersions = new ConcurrentHashMap<>();
+
+    /**
+     * Construct a SubprocessVersionActivator.
+     *
+     * @param logger A Maven logger, auto-injected by Maven
+     * @param session The activation session, auto-injected by Maven
+     */
+    @Inject
+    public SubprocessVersionActivator(final Logger logger, final ActivationSession session)
+    {
+        super(logger, session);
+        this.session = session;
+    }
+
+    @Override
+    public String getSupportedActivatorBracketName()
+    {
+        return SubprocessVersionActivator.BRACKET_NAME;
+    }
+
+    @Override
+    public boolean isActive(
+        final String unparsedCommandString,
+        final ActivationProperty property,
+        final Profile profile,
+        final ProfileActivationContext context,
+        final ModelProblemCollector problems
+    )
+    {
+        // an unusable value is reported before the process is started, not after
+        return this.getExpectedVersion(property, problems) != null &&
+               super.isActive(unparsedCommandString, property, profile, context, problems);
+    }
+
+    @Override
+    SubprocessCommand resolveCommand(final SubprocessCommand command)
+    {
+        final List<String> arguments = command.getArguments();
+        if(arguments.isEmpty())
+        {
+            return command;
+        }
+        final Path executable = this.session.getPathIndex().resolve(arguments.get(0));
+        if(executable == null)
+        {
+            return null;
+        }
+        final long modified;
+        try
+        {
+            modified = Files.getLastModifiedTime(executable).toMillis();
+        }
+        catch(final IOException e)
+        {
+            return null;
+        }
+        final List<String> newArguments = new ArrayList<>(arguments);
+        newArguments.set(0, executable.toString());
+        if(newArguments.size() == 1)
+        {
+            newArguments.add(SubprocessVersionActivator.VERSION_OPTION);
+        }
+        return command.withExecutable(newArguments, modified);
+    }
+
+    @Override
+    protected boolean processResultMatches(
+        final int exitCode,
+        final String output,
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        final Predicate<ArtifactVersion> expectedVersion = this.getExpectedVersion(property, problems);
+        if(expectedVersion == null || exitCode != 0)
+        {
+            return false;
+        }
+        final ArtifactVersion version = this.session.getParsedVersion(output);
+        if(version == null)
+        {
+            final int end = output.indexOf('\n');
+            return Utilities.problem(problems, property,
+                "The output of the command named by the property 'name' ('" +
+                (end < 0 ? output : output.substring(0, end)).trim() + "') does not contain a version."
+            );
+        }
+        return expectedVersion.test(version);
+    }
+
+    /**
+     * Find the version in the output of a command: the first dotted version, such as {@code 3.10.12} or
+     * {@code 1.2.0-beta1}, or else the first number.
+     *
+     * @param output The output of the command
+     * @return the version, or {@code null} if the output contains no number.
+     */
+    static ArtifactVersion parseVersion(final String output)
+    {
+        Matcher matcher = SubprocessVersionActivator.DOTTED_VERSION.matcher(output);
+        if(!matcher.find())
+        {
+            matcher = SubprocessVersionActivator.NUMBER.matcher(output);
+            if(!matcher.find())
+            {
+                return null;
+            }
+        }
+        return new DefaultArtifactVersion(matcher.group());
+    }
+
+    private Predicate<ArtifactVersion> getExpectedVersion(
+        final ActivationProperty property,
+        final ModelProblemCollector problems
+    )
+    {
+        final String value = property.getValue() == null ? "" : property.getValue().trim();
+        Predicate<ArtifactVersion> expectedVersion = this.expectedVersions.get(value);
+        if(expectedVersion == null)
+        {
+            if(value.isEmpty())
+            {
+                expectedVersion = null;
+            }
+            else if(value.startsWith("[") || value.startsWith("("))
+            {
+                try
+                {
+                    expectedVersion = VersionRange.createFromVersionSpec(value)::containsVersion;
+                }
+                catch(final InvalidVersionSpecificationException e)
+                {
+                    expectedVersion = null;
+                }
+            }
+            else
+            {
+                // a prefix of whole components, so that 3.1 matches 3.1.4 but not 3.10
+                expectedVersion = version -> {
+                    final String string = version.toString();
+                    return string.equals(value) || string.startsWith(value + ".") || string.startsWith(value + "-");
+                };
+            }
+            if(expectedVersion == null)
+            {
+                Utilities.problem(problems, property,
+                    "The property 'value' ('" + property.getValue() + "') must be a version range, such as " +
+                    "'[3.10,4)', or a version, such as '3.10'."
+                );
+                return null;
+            }
+            this.expectedVersions.put(value, expectedVersion);
+        }
+        return expectedVersion;
+    }
+}
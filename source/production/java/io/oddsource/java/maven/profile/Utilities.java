@@ -17,9 +17,11 @@
 package io.oddsource.java.maven.profile;
 
 import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
@@ -34,6 +36,8 @@ import org.apache.maven.model.building.ModelProblemCollectorRequest;
  */
 public final class Utilities
 {
+    private static final Pattern DURATION = Pattern.compile("^(?<amount>[0-9]{1,9})(?<unit>ms|s|m|h)?$");
+
     private Utilities()
     {
     }
@@ -89,11 +93,13 @@ public final class Utilities
     {
         final List<String> command = new ArrayList<>();
         final StringBuilder currentArgument = new StringBuilder(commandString.length());
-        Character quoteToken = null;
+        // the quote character of the current argument, or NUL outside quotes (unlike a Character, never boxed)
+        char quoteToken = '\0';
         char previous = '\0';
-        for(final char c : commandString.toCharArray())
+        for(int i = 0; i < commandString.length(); i++)
         {
-            if(quoteToken != null && quoteToken.equals(c))
+            final char c = commandString.charAt(i);
+            if(quoteToken != '\0' && quoteToken == c)
             {
                 if(previous == '\\')
                 {
@@ -103,16 +109,16 @@ public final class Utilities
                 }
                 else
                 {
-                    quoteToken = null;
+                    quoteToken = '\0';
                     command.add(currentArgument.toString());
                     currentArgument.setLength(0);
                 }
             }
-            else if(quoteToken == null && (c == '"' || c == '\'') && previous != '\\')
+            else if(quoteToken == '\0' && (c == '"' || c == '\'') && previous != '\\')
             {
                 quoteToken = c;
             }
-            else if(quoteToken == null && c == ' ')
+            else if(quoteToken == '\0' && c == ' ')
             {
                 if(currentArgument.length() > 0)
                 {
@@ -135,6 +141,53 @@ public final class Utilities
         return command;
     }
 
+    /**
+     * Parse a duration such as {@code 500ms}, {@code 5s}, {@code 2m}, or {@code 1h}. A number without a unit is in
+     * seconds.
+     *
+     * @param duration The duration string
+     * @return the duration in nanoseconds, or {@code -1} if the string is not a positive duration.
+     */
+    public static long parseDuration(final String duration)
+    {
+        final Matcher matcher = Utilities.DURATION.matcher(duration.trim());
+        if(!matcher.matches())
+        {
+            return -1;
+        }
+        final long amount = Long.parseLong(matcher.group("amount"));
+        if(amount == 0)
+        {
+            return -1;
+        }
+        final String unit = matcher.group("unit");
+        if("ms".equals(unit))
+        {
+            return TimeUnit.MILLISECONDS.toNanos(amount);
+        }
+        if("h".equals(unit))
+        {
+            return TimeUnit.HOURS.toNanos(amount);
+        }
+        return "m".equals(unit) ? TimeUnit.MINUTES.toNanos(amount) : TimeUnit.SECONDS.toNanos(amount);
+    }
+
+    /**
+     * Format a duration for a human reader, in whole seconds if possible and in milliseconds otherwise.
+     *
+     * @param nanoseconds The duration in nanoseconds
+     * @return the formatted duration, such as {@code 30 seconds} or {@code 500 milliseconds}.
+     */
+    public static String formatDuration(final long nanoseconds)
+    {
+        final long milliseconds = TimeUnit.NANOSECONDS.toMillis(nanoseconds);
+        if(milliseconds % 1000 != 0)
+        {
+            return milliseconds + (milliseconds == 1 ? " millisecond" : " milliseconds");
+        }
+        return milliseconds / 1000 + (milliseconds == 1000 ? " second" : " seconds");
+    }
+
     /**
      * Register a problem with the collector of problems.
      *
@@ -158,18 +211,58 @@ public final class Utilities
     }
 
     /**
-     * A utility to extract a "[CHARSET]" from the beginning of a string.
+     * Register a warning with the collector of problems. Unlike {@link #problem}, a warning does not fail the build.
+     *
+     * @param problems A collector of problems
+     * @param property The property
+     * @param message The message
      */
-    public static class CharsetAndRemainder
+    public static void warning(
+        final ModelProblemCollector problems,
+        final ActivationProperty property,
+        final String message
+    )
     {
-        private static final Pattern PATTERN = Pattern.compile(
-            "^(?:\\[(?<charset>[a-zA-Z0-9_-]+)])?(?<remainder>.+)$"
+        problems.add(
+            new ModelProblemCollectorRequest(ModelProblem.Severity.WARNING, ModelProblem.Version.BASE).
+                setMessage(message).
+                setLocation(property.getLocation(""))
         );
+    }
 
+    /**
+     * Indicates whether a string contains a line terminator, which {@code .} does not match in a regular expression.
+     *
+     * @param subject The string
+     * @param from The index from which to search
+     * @return whether a line terminator is present.
+     */
+    static boolean hasLineTerminator(final String subject, final int from)
+    {
+        for(int i = from; i < subject.length(); i++)
+        {
+            final char c = subject.charAt(i);
+            if(c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029')
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A utility to extract a "[CHARSET]" from the beginning of a string. This is evaluated for every profile of every
+     * model, so it is parsed by hand, with the same results as matching
+     * {@code ^(?:\[(?<charset>[a-zA-Z0-9_-]+)])?(?<remainder>.+)$}.
+     */
+    public static class CharsetAndRemainder
+    {
         private final Charset charset;
 
         private final String remainder;
 
+        private final String problem;
+
         /**
          * Construct a result by performing logic in utility the constructor.
          *
@@ -186,42 +279,83 @@ public final class Utilities
             final ModelProblemCollector problems
         )
         {
-            final Matcher matcher = CharsetAndRemainder.PATTERN.matcher(subject);
-            if(matcher.matches())
+            this(subject, defaultCharset);
+            if(this.problem != null)
             {
-                final String charsetName = matcher.group("charset");
-                if(charsetName == null)
+                Utilities.problem(problems, property, this.problem);
+            }
+        }
+
+        /**
+         * Construct a result without reporting its problem, which is available from {@link #getProblem()}.
+         *
+         * @param subject The subject from which [CHARSET] should be extracted
+         * @param defaultCharset The default charset if no [CHARSET] is present
+         */
+        CharsetAndRemainder(final String subject, final Charset defaultCharset)
+        {
+            final int end = CharsetAndRemainder.charsetEnd(subject);
+            if(end > 0)
+            {
+                Charset charset = null;
+                String problem = null;
+                try
                 {
-                    this.charset = defaultCharset;
+                    charset = Charset.forName(subject.substring(1, end));
                 }
-                else
+                catch(final UnsupportedCharsetException | IllegalCharsetNameException e)
                 {
-                    Charset charset = null;
-                    try
-                    {
-                        charset = Charset.forName(charsetName);
-                    }
-                    catch(final UnsupportedCharsetException e)
-                    {
-                        Utilities.problem(problems, property,
-                            "The charset from the property 'name' ('" + subject + "') is not supported."
-                        );
-                    }
-                    this.charset = charset;
+                    problem = "The charset from the property 'name' ('" + subject + "') is not supported.";
                 }
-                this.remainder = matcher.group("remainder");
+                this.charset = charset;
+                this.remainder = subject.substring(end + 1);
+                this.problem = problem;
+            }
+            else if(!subject.isEmpty() && !Utilities.hasLineTerminator(subject, 0))
+            {
+                this.charset = defaultCharset;
+                this.remainder = subject;
+                this.problem = null;
             }
             else
             {
-                Utilities.problem(problems, property,
-                    "The property 'name' ('" + subject +
-                    "') did not match the optional charset extraction pattern."
-                );
                 this.charset = null;
                 this.remainder = null;
+                this.problem = "The property 'name' ('" + subject +
+                               "') did not match the optional charset extraction pattern.";
             }
         }
 
+        /**
+         * Find the closing bracket of a leading [CHARSET] that is followed by a remainder.
+         *
+         * @return the index of the closing bracket, or {@code -1} if there is no [CHARSET] (which, as in the
+         *     pattern, includes a [CHARSET] that is not followed by a remainder, which is then the whole subject).
+         */
+        private static int charsetEnd(final String subject)
+        {
+            if(subject.isEmpty() || subject.charAt(0) != '[')
+            {
+                return -1;
+            }
+            int i = 1;
+            while(i < subject.length() && CharsetAndRemainder.isCharsetCharacter(subject.charAt(i)))
+            {
+                i++;
+            }
+            if(i == 1 || i >= subject.length() - 1 || subject.charAt(i) != ']' ||
+               Utilities.hasLineTerminator(subject, i + 1))
+            {
+                return -1;
+            }
+            return i;
+        }
+
+        private static boolean isCharsetCharacter(final char c)
+        {
+            return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-';
+        }
+
         /**
          * Get the parsed or default charset.
          *
@@ -241,5 +375,15 @@ public final class Utilities
         {
             return this.remainder;
         }
+
+        /**
+         * Get the problem with the subject.
+         *
+         * @return the problem message, or {@code null} if there is no problem.
+         */
+        String getProblem()
+        {
+            return this.problem;
+        }
     }
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.oddsource.java.maven.profile;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.building.ModelProblem;
+import org.apache.maven.model.building.ModelProblemCollector;
+import org.apache.maven.model.building.ModelProblemCollectorRequest;
+import org.apache.maven.model.profile.DefaultProfileActivationContext;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMockRule;
+import org.easymock.EasyMockSupport;
+import org.easymock.Mock;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestActivationBudget extends EasyMockSupport
+{
+    /**
+     * Mocking.
+     */
+    @Rule
+    public EasyMockRule rule = new EasyMockRule(this);
+
+    @Mock
+    private ModelProblemCollector problems;
+
+    private final Map<String, String> properties = new HashMap<>();
+
+    private final DefaultProfileActivationContext context = new DefaultProfileActivationContext();
+
+    private void set(final String name, final String value)
+    {
+        this.properties.put(name, value);
+        this.context.setUserProperties(this.properties);
+    }
+
+    @Test
+    public void testNoBudget()
+    {
+        this.replayAll();
+
+        final ActivationBudget budget = new ActivationBudget();
+        this.context.setUserProperties(this.properties);
+        budget.consume("command [sleep, 15]", TimeUnit.HOURS.toNanos(1));
+        assertEquals(Long.MAX_VALUE, budget.remaining(this.context, new ActivationProperty(), this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testInvalidBudget()
+    {
+        final Capture<ModelProblemCollectorRequest> capture = newCapture(CaptureType.ALL);
+        this.problems.add(capture(capture));
+        expectLastCall().times(2);
+
+        this.replayAll();
+
+        final ActivationBudget budget = new ActivationBudget();
+        this.set("finer.activator.budget", "forever");
+        assertEquals(-1L, budget.remaining(this.context, new ActivationProperty(), this.problems));
+        this.set("finer.activator.budget", "1h");
+        this.set("finer.activator.budget.policy", "ignore");
+        assertEquals(-1L, budget.remaining(this.context, new ActivationProperty(), this.problems));
+
+        assertEquals(
+            "The property 'finer.activator.budget' ('forever') must be a positive duration, such as '30s', '2m', " +
+            "or '1h'.",
+            capture.getValues().get(0).getMessage()
+        );
+        assertEquals(
+            "The property 'finer.activator.budget.policy' ('ignore') must be one of 'inactive' or 'fail'.",
+            capture.getValues().get(1).getMessage()
+        );
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testBudgetIsWallClockTimeFromTheStartOfTheSession()
+    {
+        this.replayAll();
+
+        final ActivationBudget budget = new ActivationBudget();
+        this.set("finer.activator.budget", "1h");
+        // time spent by concurrent activations is not added up
+        budget.consume("command [sleep, 15]", TimeUnit.HOURS.toNanos(1));
+        budget.consume("command [sleep, 14]", TimeUnit.HOURS.toNanos(1));
+        final long remaining = budget.remaining(this.context, new ActivationProperty(), this.problems);
+        assertTrue(remaining > 0);
+        assertTrue(remaining <= TimeUnit.HOURS.toNanos(1));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testExhaustionIsReportedOncePerSession() throws InterruptedException
+    {
+        final Capture<ModelProblemCollectorRequest> capture = newCapture(CaptureType.ALL);
+        this.problems.add(capture(capture));
+        expectLastCall().times(2);
+
+        this.replayAll();
+
+        final ActivationBudget budget = new ActivationBudget();
+        this.set("finer.activator.budget", "1ms");
+        budget.consume("command [sleep, 15]", TimeUnit.SECONDS.toNanos(2));
+        budget.consume("file /etc/os-release", TimeUnit.MILLISECONDS.toNanos(3));
+        budget.consume("command [sleep, 15]", TimeUnit.SECONDS.toNanos(1));
+        Thread.sleep(20L);
+
+        // a problem reported while prefetching would be lost
+        assertEquals(
+            -1L,
+            budget.remaining(this.context, new ActivationProperty(), BaseFinerActivator.PREFETCH_PROBLEMS)
+        );
+        assertEquals(-1L, budget.remaining(this.context, new ActivationProperty(), this.problems));
+        assertEquals(-1L, budget.remaining(this.context, new ActivationProperty(), this.problems));
+
+        // a new session starts a new budget
+        budget.reset();
+        this.set("finer.activator.budget", "1h");
+        assertTrue(budget.remaining(this.context, new ActivationProperty(), this.problems) > 0);
+        this.set("finer.activator.budget", "1ms");
+        this.set("finer.activator.budget.policy", "fail");
+        Thread.sleep(20L);
+        assertEquals(-1L, budget.remaining(this.context, new ActivationProperty(), this.problems));
+
+        final ModelProblemCollectorRequest warning = capture.getValues().get(0);
+        assertEquals(ModelProblem.Severity.WARNING, warning.getSeverity());
+        assertEquals(
+            "The finer activation budget of 1 millisecond ('finer.activator.budget') was exhausted, so this and all " +
+            "remaining finer activations that execute commands or read files are inactive. Finer activations spent " +
+            "3003 milliseconds executing commands and reading files, most of it on command [sleep, 15] (3 seconds), " +
+            "file /etc/os-release (3 milliseconds).",
+            warning.getMessage()
+        );
+        final ModelProblemCollectorRequest error = capture.getValues().get(1);
+        assertEquals(ModelProblem.Severity.ERROR, error.getSeverity());
+        assertEquals(
+            "The finer activation budget of 1 millisecond ('finer.activator.budget') was exhausted, so this and all " +
+            "remaining finer activations that execute commands or read files are inactive. Finer activations spent " +
+            "0 seconds executing commands and reading files.",
+            error.getMessage()
+        );
+
+        this.verifyAll();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.oddsource.java.maven.profile;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestSubprocessFailure
+{
+    private static SubprocessCommand command(final long timeout)
+    {
+        return new SubprocessCommand(
+            Arrays.asList("sleep", "15"),
+            StandardCharsets.UTF_8,
+            ErrorOutput.MERGE,
+            1024,
+            timeout
+        );
+    }
+
+    @Test
+    public void testTimeoutAppliesToShorterTimeoutsOnly()
+    {
+        final ActivationSession session = new ActivationSession();
+        final long second = TimeUnit.SECONDS.toNanos(1);
+        session.putSubprocessFailure(
+            TestSubprocessFailure.command(2 * second),
+            new SubprocessFailure("timed out after 2 seconds", 2 * second)
+        );
+
+        // a command that timed out is not executed again with the same or less time, but might complete with more
+        assertEquals(
+            "timed out after 2 seconds",
+            session.getSubprocessFailure(TestSubprocessFailure.command(2 * second)).getMessage()
+        );
+        assertNotNull(session.getSubprocessFailure(TestSubprocessFailure.command(second)));
+        assertNull(session.getSubprocessFailure(TestSubprocessFailure.command(3 * second)));
+
+        // the longest timeout that was exceeded is kept
+        session.putSubprocessFailure(
+            TestSubprocessFailure.command(3 * second),
+            new SubprocessFailure("timed out after 3 seconds", 3 * second)
+        );
+        session.putSubprocessFailure(
+            TestSubprocessFailure.command(second),
+            new SubprocessFailure("timed out after 1 second", second)
+        );
+        assertEquals(
+            "timed out after 3 seconds",
+            session.getSubprocessFailure(TestSubprocessFailure.command(second)).getMessage()
+        );
+        assertNotNull(session.getSubprocessFailure(TestSubprocessFailure.command(3 * second)));
+        assertNull(session.getSubprocessFailure(TestSubprocessFailure.command(4 * second)));
+
+        // a new session executes the command again
+        session.reset();
+        assertNull(session.getSubprocessFailure(TestSubprocessFailure.command(second)));
+    }
+
+    @Test
+    public void testFailureRegardlessOfTimeout()
+    {
+        final ActivationSession session = new ActivationSession();
+        session.putSubprocessFailure(
+            TestSubprocessFailure.command(TimeUnit.SECONDS.toNanos(1)),
+            new SubprocessFailure("could not be executed", Long.MAX_VALUE)
+        );
+        assertNotNull(session.getSubprocessFailure(TestSubprocessFailure.command(TimeUnit.HOURS.toNanos(1))));
+        assertNotNull(session.getSubprocessFailure(TestSubprocessFailure.command(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testFailureIsReportedOnce()
+    {
+        final SubprocessFailure failure = new SubprocessFailure("could not be executed", Long.MAX_VALUE);
+        assertTrue(failure.claimReport());
+        assertFalse(failure.claimReport());
+        assertFalse(failure.claimReport());
+    }
+}
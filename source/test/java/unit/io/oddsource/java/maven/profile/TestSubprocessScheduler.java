@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.oddsource.java.maven.profile;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.building.ModelProblem;
+import org.apache.maven.model.building.ModelProblemCollector;
+import org.apache.maven.model.building.ModelProblemCollectorRequest;
+import org.apache.maven.model.profile.DefaultProfileActivationContext;
+import org.easymock.Capture;
+import org.easymock.EasyMockRule;
+import org.easymock.EasyMockSupport;
+import org.easymock.Mock;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class TestSubprocessScheduler extends EasyMockSupport
+{
+    /**
+     * Mocking.
+     */
+    @Rule
+    public EasyMockRule rule = new EasyMockRule(this);
+
+    @Mock
+    private ModelProblemCollector problems;
+
+    private final Map<String, String> properties = new HashMap<>();
+
+    private final DefaultProfileActivationContext context = new DefaultProfileActivationContext();
+
+    private void setLimit(final String limit)
+    {
+        this.properties.put("finer.activator.subprocess.maxConcurrent", limit);
+        this.context.setUserProperties(this.properties);
+    }
+
+    @Test
+    public void testLimitIsConfiguredOncePerSession()
+    {
+        this.replayAll();
+
+        final SubprocessScheduler scheduler = new SubprocessScheduler();
+        this.setLimit("1");
+        assertTrue(scheduler.configure(this.context, new ActivationProperty(), this.problems));
+        this.setLimit("3");
+        assertTrue(scheduler.configure(this.context, new ActivationProperty(), this.problems));
+        assertTrue(scheduler.getStatistics(), scheduler.getStatistics().contains(" with at most 1 at a time;"));
+
+        scheduler.reset();
+        assertTrue(scheduler.configure(this.context, new ActivationProperty(), this.problems));
+        assertTrue(scheduler.getStatistics(), scheduler.getStatistics().contains(" with at most 3 at a time;"));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testInvalidLimitIsReportedOncePerSession()
+    {
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final SubprocessScheduler scheduler = new SubprocessScheduler();
+        this.setLimit("none");
+        // a problem reported while prefetching would be lost
+        assertFalse(scheduler.configure(this.context, new ActivationProperty(), BaseFinerActivator.PREFETCH_PROBLEMS));
+        assertFalse(scheduler.configure(this.context, new ActivationProperty(), this.problems));
+        assertTrue(scheduler.configure(this.context, new ActivationProperty(), this.problems));
+        assertTrue(scheduler.getStatistics(), scheduler.getStatistics().contains(
+            " with at most " + SubprocessScheduler.DEFAULT_LIMIT + " at a time;"
+        ));
+
+        assertEquals(ModelProblem.Severity.ERROR, capture.getValue().getSeverity());
+        assertEquals(
+            "The property 'finer.activator.subprocess.maxConcurrent' ('none') must be a positive number.",
+            capture.getValue().getMessage()
+        );
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testExecutionsBeyondTheLimitWait() throws InterruptedException
+    {
+        this.replayAll();
+
+        final SubprocessScheduler scheduler = new SubprocessScheduler();
+        this.setLimit("1");
+        assertTrue(scheduler.configure(this.context, new ActivationProperty(), this.problems));
+
+        scheduler.acquire();
+        final Thread waiting = new Thread(() -> {
+            try
+            {
+                scheduler.acquire();
+                scheduler.release();
+            }
+            catch(final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiting.start();
+        // however long this takes, the waiting execution cannot start before the permit is released
+        waiting.join(200L);
+        assertTrue(waiting.isAlive());
+        scheduler.release();
+        waiting.join();
+
+        final String statistics = scheduler.getStatistics();
+        assertTrue(statistics, statistics.startsWith(
+            "2 subprocesses executed with at most 1 at a time; 1 waited a total of "
+        ));
+        assertTrue(statistics, statistics.endsWith(", at most 1 waiting at once)."));
+
+        scheduler.reset();
+        assertTrue(scheduler.getStatistics(), scheduler.getStatistics().startsWith(
+            "0 subprocesses executed with at most 1 at a time; 0 waited"
+        ));
+
+        this.verifyAll();
+    }
+}
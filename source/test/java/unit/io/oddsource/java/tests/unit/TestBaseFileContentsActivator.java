@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
+import java.util.Collections;
 
 import org.apache.maven.model.ActivationProperty;
 import org.apache.maven.model.building.ModelProblem;
@@ -39,7 +40,9 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import io.oddsource.java.maven.profile.ActivationSession;
 import io.oddsource.java.maven.profile.BaseFileContentsActivator;
+import io.oddsource.java.maven.profile.FinerSessionParticipant;
 
 public class TestBaseFileContentsActivator extends EasyMockSupport
 {
@@ -81,12 +84,15 @@ public class TestBaseFileContentsActivator extends EasyMockSupport
                  String.class,
                  ActivationProperty.class,
                  ModelProblemCollector.class).
-             withConstructor(Logger.class).
-             withArgs(this.logger).
+             withConstructor(Logger.class, ActivationSession.class).
+             withArgs(this.logger, new ActivationSession()).
              mock();
 
         reset(this.logger);
         this.setUpLogger();
+
+        expect(this.context.getUserProperties()).andReturn(Collections.emptyMap()).anyTimes();
+        expect(this.context.getSystemProperties()).andReturn(Collections.emptyMap()).anyTimes();
     }
 
     @Test
@@ -224,16 +230,139 @@ public class TestBaseFileContentsActivator extends EasyMockSupport
         assertTrue(result);
     }
 
+    @Test
+    public void testIsActiveFileResultsCachedUntilFileChanges() throws IOException
+    {
+        final String contents = "the same file is checked by every module";
+        final String changed = "until it changes, and is read again";
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("module");
+        final ActivationProperty other = new ActivationProperty();
+        other.setValue("file");
+
+        // each only once
+        expect(this.activator.contentsMatch(contents, property, this.problems)).andReturn(true);
+        expect(this.activator.contentsMatch(contents, other, this.problems)).andReturn(false);
+        expect(this.activator.contentsMatch(changed, property, this.problems)).andReturn(false);
+
+        this.replayAll();
+
+        final File temp = File.createTempFile("testIsActiveFileResultsCachedUntilFileChanges", ".txt");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+
+        for(int i = 0; i < 3; i++)
+        {
+            assertTrue(this.activator.isActive(temp.getPath(), property, null, this.context, this.problems));
+            assertFalse(this.activator.isActive(temp.getPath(), other, null, this.context, this.problems));
+        }
+
+        Files.write(temp.toPath(), changed.getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+
+        for(int i = 0; i < 3; i++)
+        {
+            assertFalse(this.activator.isActive(temp.getPath(), property, null, this.context, this.problems));
+        }
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testPrefetchReadsAndMatchesFileAhead() throws IOException
+    {
+        final String contents = "the file is read when the session starts";
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("session");
+
+        // only once, while prefetching, when problems cannot be reported yet
+        expect(this.activator.contentsMatch(eq(contents), eq(property), anyObject(ModelProblemCollector.class))).
+            andReturn(true);
+
+        this.replayAll();
+
+        final File temp = File.createTempFile("testPrefetchReadsAndMatchesFileAhead", ".txt");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+
+        this.activator.prefetch(temp.getPath(), property, this.context);
+        assertTrue(this.activator.isActive(temp.getPath(), property, null, this.context, this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testIsActiveFileResultsOutliveDaemonSessionsUntilFileChanges() throws IOException
+    {
+        final String contents = "the same file is checked by every build";
+        final String changed = "until it changes, and the watcher says so";
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("build");
+
+        final ActivationSession session;
+        System.setProperty("mvnd.home", "/opt/mvnd");
+        try
+        {
+            session = new ActivationSession();
+        }
+        finally
+        {
+            System.clearProperty("mvnd.home");
+        }
+        replay(this.logger);
+        final Base daemonActivator = this.createMockBuilder(Base.class).
+             addMockedMethod(
+                 "contentsMatch",
+                 String.class,
+                 ActivationProperty.class,
+                 ModelProblemCollector.class).
+             withConstructor(Logger.class, ActivationSession.class).
+             withArgs(this.logger, session).
+             mock();
+        reset(this.logger);
+        this.setUpLogger();
+
+        // each only once
+        expect(daemonActivator.contentsMatch(contents, property, this.problems)).andReturn(true);
+        expect(daemonActivator.contentsMatch(changed, property, this.problems)).andReturn(false);
+
+        final FinerSessionParticipant participant =
+            new FinerSessionParticipant(this.logger, session, Collections.emptyList());
+
+        this.replayAll();
+
+        final File temp = File.createTempFile("testIsActiveFileResultsOutliveDaemonSessions", ".txt");
+        temp.deleteOnExit();
+        Files.write(temp.toPath(), contents.getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+
+        for(int i = 0; i < 3; i++)
+        {
+            assertTrue(daemonActivator.isActive(temp.getPath(), property, null, this.context, this.problems));
+            participant.afterSessionEnd(null);
+        }
+
+        Files.write(temp.toPath(), changed.getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+
+        // the change is noticed by the next evaluation, whether or not the watcher has reported it yet
+        assertFalse(daemonActivator.isActive(temp.getPath(), property, null, this.context, this.problems));
+        assertFalse(daemonActivator.isActive(temp.getPath(), property, null, this.context, this.problems));
+
+        this.verifyAll();
+    }
+
     private static class Base extends BaseFileContentsActivator
     {
         /**
          * Construct a BaseFileContentsActivator.
          *
          * @param logger A Maven logger, auto-injected by Maven
+         * @param session The activation session, auto-injected by Maven
          */
-        Base(final Logger logger)
+        Base(final Logger logger, final ActivationSession session)
         {
-            super(logger);
+            super(logger, session);
         }
 
         @Override
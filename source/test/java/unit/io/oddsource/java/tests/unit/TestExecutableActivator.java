@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.oddsource.java.tests.unit;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.building.ModelProblem;
+import org.apache.maven.model.building.ModelProblemCollector;
+import org.apache.maven.model.building.ModelProblemCollectorRequest;
+import org.codehaus.plexus.logging.Logger;
+import org.easymock.Capture;
+import org.easymock.EasyMockRule;
+import org.easymock.EasyMockSupport;
+import org.easymock.Mock;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.oddsource.java.maven.profile.ActivationSession;
+import io.oddsource.java.maven.profile.ExecutableActivator;
+
+public class TestExecutableActivator extends EasyMockSupport
+{
+    /**
+     * Mocking.
+     */
+    @Rule
+    public EasyMockRule rule = new EasyMockRule(this);
+
+    @Mock
+    private Logger logger;
+
+    @Mock
+    private ModelProblemCollector problems;
+
+    private ExecutableActivator activator;
+
+    @Before
+    public void setUp()
+    {
+        expect(this.logger.isDebugEnabled()).andReturn(true).anyTimes();
+        this.logger.debug(anyString());
+        expectLastCall().anyTimes();
+
+        this.activator = new ExecutableActivator(this.logger, new ActivationSession());
+    }
+
+    @Test
+    public void testProgramOnPath()
+    {
+        // warning ... this test may not pass on Windows as-is
+
+        this.replayAll();
+
+        assertTrue(this.activator.isActive("sh", this.property(null), null, null, this.problems));
+        assertTrue(this.activator.isActive("sh", this.property(""), null, null, this.problems));
+        assertTrue(this.activator.isActive("sh", this.property("TRUE"), null, null, this.problems));
+        assertFalse(this.activator.isActive("sh", this.property("false"), null, null, this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testProgramNotOnPath()
+    {
+        this.replayAll();
+
+        final String name = "finer-activator-no-such-program";
+        assertFalse(this.activator.isActive(name, this.property(null), null, null, this.problems));
+        assertTrue(this.activator.isActive(name, this.property("false"), null, null, this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testFile() throws IOException
+    {
+        // warning ... this test may not pass on Windows as-is
+
+        this.replayAll();
+
+        final File file = File.createTempFile("testFile", ".sh");
+        file.deleteOnExit();
+
+        assertFalse(this.activator.isActive(file.getPath(), this.property(null), null, null, this.problems));
+        assertTrue(file.setExecutable(true));
+        assertTrue(this.activator.isActive(file.getPath(), this.property(null), null, null, this.problems));
+        assertFalse(this.activator.isActive(file.getParent(), this.property(null), null, null, this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testMatchesCommandV() throws IOException, InterruptedException
+    {
+        // warning ... this test may not pass on Windows as-is
+
+        this.replayAll();
+
+        // command -v does not check a name that contains a directory, unlike the activator, so only programs compare
+        for(final String name : new String[] {"sh", "cat", "env", "finer-activator-no-such-program"})
+        {
+            final Process process = new ProcessBuilder("sh", "-c", "command -v \"$0\" >/dev/null", name).start();
+            assertEquals(
+                name,
+                process.waitFor() == 0,
+                this.activator.isActive(name, this.property(null), null, null, this.problems)
+            );
+        }
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testInvalidValue()
+    {
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        assertFalse(this.activator.isActive("sh", this.property("yes"), null, null, this.problems));
+        assertTrue(capture.hasCaptured());
+
+        final ModelProblemCollectorRequest request = capture.getValue();
+        assertNotNull(request);
+        assertEquals(ModelProblem.Severity.ERROR, request.getSeverity());
+        assertEquals("The property 'value' ('yes') must be 'true', 'false', or empty.", request.getMessage());
+
+        this.verifyAll();
+    }
+
+    private ActivationProperty property(final String value)
+    {
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue(value);
+        return property;
+    }
+}
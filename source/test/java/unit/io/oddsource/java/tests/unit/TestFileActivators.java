@@ -19,9 +19,24 @@ package io.oddsource.java.tests.unit;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
 import org.apache.maven.model.ActivationProperty;
 import org.apache.maven.model.building.ModelProblemCollector;
 import org.apache.maven.model.building.ModelProblemCollectorRequest;
+import org.apache.maven.model.profile.DefaultProfileActivationContext;
+import org.apache.maven.model.profile.ProfileActivationContext;
 import org.codehaus.plexus.logging.Logger;
 import org.easymock.Capture;
 import org.easymock.EasyMockRule;
@@ -30,6 +45,7 @@ import org.easymock.Mock;
 import org.junit.Rule;
 import org.junit.Test;
 
+import io.oddsource.java.maven.profile.ActivationSession;
 import io.oddsource.java.maven.profile.FileContainsActivator;
 import io.oddsource.java.maven.profile.FileRegexActivator;
 
@@ -55,7 +71,7 @@ public class TestFileActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("hello");
 
-        final Contains activator = new Contains(this.logger);
+        final Contains activator = new Contains(this.logger, new ActivationSession());
         final boolean result = activator.contentsMatch("", property, this.problems);
         assertFalse(result);
 
@@ -70,7 +86,7 @@ public class TestFileActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("goodbye");
 
-        final Contains activator = new Contains(this.logger);
+        final Contains activator = new Contains(this.logger, new ActivationSession());
         final boolean result = activator.contentsMatch(
             "No lowercase GOODBYE in here",
             property,
@@ -89,7 +105,7 @@ public class TestFileActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("goodbye");
 
-        final Contains activator = new Contains(this.logger);
+        final Contains activator = new Contains(this.logger, new ActivationSession());
         final boolean result = activator.contentsMatch(
             "Yes lowercase goodbye in here",
             property,
@@ -111,7 +127,7 @@ public class TestFileActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("(()([/this should confuse it");
 
-        final Regex activator = new Regex(this.logger);
+        final Regex activator = new Regex(this.logger, new ActivationSession());
         final boolean result = activator.contentsMatch("hello", property, this.problems);
         assertFalse(result);
         assertTrue(capture.hasCaptured());
@@ -133,7 +149,7 @@ public class TestFileActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("(()([/this should confuse it");
 
-        final Regex activator = new Regex(this.logger);
+        final Regex activator = new Regex(this.logger, new ActivationSession());
         final boolean result = activator.contentsMatch("", property, this.problems);
         assertFalse(result);
         assertTrue(capture.hasCaptured());
@@ -152,7 +168,7 @@ public class TestFileActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("(hello|goodbye)");
 
-        final Regex activator = new Regex(this.logger);
+        final Regex activator = new Regex(this.logger, new ActivationSession());
         final boolean result = activator.contentsMatch("", property, this.problems);
         assertFalse(result);
 
@@ -167,7 +183,7 @@ public class TestFileActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("(hello|goodbye)");
 
-        final Regex activator = new Regex(this.logger);
+        final Regex activator = new Regex(this.logger, new ActivationSession());
         final boolean result = activator.contentsMatch(
             "somewhere in this output\nwe do not say\nwhat it is looking for",
             property,
@@ -186,7 +202,7 @@ public class TestFileActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("(hello|goodbye)");
 
-        final Regex activator = new Regex(this.logger);
+        final Regex activator = new Regex(this.logger, new ActivationSession());
         final boolean result = activator.contentsMatch(
             "somewhere in this output\nwe say goodbye\nand that's what it is looking for",
             property,
@@ -197,11 +213,258 @@ public class TestFileActivators extends EasyMockSupport
         this.verifyAll();
     }
 
+    @Test
+    public void testRegexActivatorLargeFiles() throws IOException
+    {
+        expect(this.logger.isDebugEnabled()).andReturn(false).anyTimes();
+        this.logger.debug(anyString());
+        expectLastCall().anyTimes();
+
+        this.replayAll();
+
+        // large enough to be mapped into memory instead of read, with what matters at the very end
+        final StringBuilder builder = new StringBuilder();
+        for(int i = 0; builder.length() < 1100000; i++)
+        {
+            builder.append("line ").append(i).append('\n');
+        }
+        final byte[] lines = builder.toString().getBytes(StandardCharsets.US_ASCII);
+
+        final Regex activator = new Regex(this.logger, new ActivationSession());
+        final ProfileActivationContext context = new DefaultProfileActivationContext();
+        for(final Charset charset : new Charset[] {
+            StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII,
+        })
+        {
+            for(final String last : new String[] {"ID=fedora", "ID=caf\u00e9"})
+            {
+                final File file = File.createTempFile("testRegexActivatorLargeFiles", ".txt");
+                file.deleteOnExit();
+                try(OutputStream output = Files.newOutputStream(file.toPath()))
+                {
+                    output.write(lines);
+                    output.write(last.getBytes(charset));
+                }
+                final String contents = new String(Files.readAllBytes(file.toPath()), charset);
+                for(final String regex : new String[] {"^ID=fedora$", "^ID=caf.$", "\u00e9$", "\uFFFD", "^line 7$"})
+                {
+                    final ActivationProperty property = new ActivationProperty();
+                    property.setValue(regex);
+                    final String name = "[" + charset.name() + "]" + file.getPath();
+                    assertEquals(
+                        charset + " " + last + " " + regex,
+                        Pattern.compile(regex, Pattern.MULTILINE).matcher(contents).find(),
+                        activator.isActive(name, property, null, context, this.problems)
+                    );
+                }
+            }
+        }
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testContainsActivatorLargeFiles() throws IOException
+    {
+        expect(this.logger.isDebugEnabled()).andReturn(false).anyTimes();
+        this.logger.debug(anyString());
+        expectLastCall().anyTimes();
+
+        this.replayAll();
+
+        // large enough to be searched as it is read, a chunk at a time, with multi-byte characters across chunks
+        final StringBuilder builder = new StringBuilder();
+        for(int i = 0; builder.length() < 200000; i++)
+        {
+            builder.append("r\u00e9sum\u00e9 ").append(i).append(" \u65e5\u672c\n");
+        }
+        final String text = builder.toString();
+
+        final Contains activator = new Contains(this.logger, new ActivationSession());
+        final ProfileActivationContext context = new DefaultProfileActivationContext();
+        // searched without decoding, except in UTF-16 and windows-1252 for the values that cannot be encoded
+        for(final Charset charset : new Charset[] {
+            StandardCharsets.UTF_8, StandardCharsets.UTF_16, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII,
+            Charset.forName("windows-1252"),
+        })
+        {
+            final File file = File.createTempFile("testContainsActivatorLargeFiles", ".txt");
+            file.deleteOnExit();
+            final byte[] bytes = text.getBytes(charset);
+            Files.write(file.toPath(), bytes);
+            final String contents = new String(bytes, charset);
+            // the characters that end the first and second chunks of 64 KiB
+            final int first = new String(Arrays.copyOf(bytes, 65536), charset).length();
+            final int second = new String(Arrays.copyOf(bytes, 2 * 65536), charset).length();
+            for(final String value : new String[] {
+                "r\u00e9sum\u00e9 0 ", contents.substring(first - 10, first + 10),
+                contents.substring(second - 1, second + 1), contents.substring(contents.length() - 30),
+                "r\u00e9sum\u00e9 0 \u65e5\u672c\nr", "absent", "\u65e5\u672c\n\n", "\ud83d", "? \ufffd", "?\n",
+            })
+            {
+                final ActivationProperty property = new ActivationProperty();
+                property.setValue(value);
+                final String name = "[" + charset.name() + "]" + file.getPath();
+                assertEquals(
+                    charset + " " + value,
+                    contents.contains(value),
+                    activator.isActive(name, property, null, context, this.problems)
+                );
+            }
+        }
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testContainsActivatorLargeFilesMatchContentsMatch() throws IOException
+    {
+        expect(this.logger.isDebugEnabled()).andReturn(false).anyTimes();
+        this.logger.debug(anyString());
+        expectLastCall().anyTimes();
+
+        this.replayAll();
+
+        // few distinct bytes, so that the first and last bytes of values match often, and values of every length
+        final Random random = new Random(2209);
+        final StringBuilder builder = new StringBuilder();
+        while(builder.length() < 150000)
+        {
+            builder.append("ab\u00e9\n".charAt(random.nextInt(4)));
+        }
+        final String contents = builder.toString();
+        final File file = File.createTempFile("testContainsActivatorLargeFilesMatchContentsMatch", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+
+        final Contains activator = new Contains(this.logger, new ActivationSession());
+        final ProfileActivationContext context = new DefaultProfileActivationContext();
+        for(int i = 0; i < 500; i++)
+        {
+            final int start = random.nextInt(contents.length() - 40);
+            final char[] value = contents.substring(start, start + 1 + random.nextInt(40)).toCharArray();
+            if(random.nextBoolean())
+            {
+                value[random.nextInt(value.length)] = "ab\u00e9\nc".charAt(random.nextInt(5));
+            }
+            final ActivationProperty property = new ActivationProperty();
+            property.setValue(new String(value));
+            assertEquals(
+                property.getValue(),
+                activator.contentsMatch(contents, property, this.problems),
+                activator.isActive(file.getPath(), property, null, context, this.problems)
+            );
+        }
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testContainsActivatorLargeFilesAdjacentMismatches() throws IOException
+    {
+        expect(this.logger.isDebugEnabled()).andReturn(false).anyTimes();
+        this.logger.debug(anyString());
+        expectLastCall().anyTimes();
+
+        this.replayAll();
+
+        // bytes that differ from those of the values by one, next to bytes that match them
+        final StringBuilder builder = new StringBuilder();
+        while(builder.length() < 100000)
+        {
+            builder.append("a`bc ");
+        }
+        final String contents = builder.toString();
+        final File file = File.createTempFile("testContainsActivatorLargeFilesAdjacentMismatches", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+
+        final Contains activator = new Contains(this.logger, new ActivationSession());
+        final ProfileActivationContext context = new DefaultProfileActivationContext();
+        for(final String value : new String[] {"abb", "`cc", "a`bc a`bc", "abc", "`bd", "a`b", "c a`", "bc!"})
+        {
+            final ActivationProperty property = new ActivationProperty();
+            property.setValue(value);
+            assertEquals(
+                value,
+                contents.contains(value),
+                activator.isActive(file.getPath(), property, null, context, this.problems)
+            );
+        }
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testActivatorsVeryLargeFiles() throws IOException
+    {
+        expect(this.logger.isDebugEnabled()).andReturn(false).anyTimes();
+        this.logger.debug(anyString());
+        expectLastCall().anyTimes();
+
+        this.replayAll();
+
+        // large enough to be searched in regions concurrently, if there is more than one processor
+        final StringBuilder builder = new StringBuilder();
+        for(int i = 0; builder.length() < 40 * 1024 * 1024; i++)
+        {
+            builder.append("line ").append(i).append('\n');
+        }
+        builder.append("ID=fedora");
+        final String contents = builder.toString();
+        final File file = File.createTempFile("testActivatorsVeryLargeFiles", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+
+        final DefaultProfileActivationContext context = new DefaultProfileActivationContext();
+        context.setUserProperties(Collections.singletonMap("finer.activator.file.regexLineLocal", "true"));
+
+        final List<String> values = new ArrayList<>(Arrays.asList(
+            "line 0\nline 1\n", "ID=fedora", "ID=debian", "\nID=", "line 1234567\n"
+        ));
+        // spanning where the regions end, for any number of regions around ten
+        for(int count = 10; count <= 12; count++)
+        {
+            for(int i = 1; i < count; i++)
+            {
+                final int end = contents.length() / count * i;
+                values.add(contents.substring(end - 3, end + 3));
+            }
+        }
+        final Contains contains = new Contains(this.logger, new ActivationSession());
+        for(final String value : values)
+        {
+            final ActivationProperty property = new ActivationProperty();
+            property.setValue(value);
+            assertEquals(
+                value,
+                contents.contains(value),
+                contains.isActive(file.getPath(), property, null, context, this.problems)
+            );
+        }
+
+        final Regex regex = new Regex(this.logger, new ActivationSession());
+        for(final String value : new String[] {
+            "^ID=fedora$", "^ID=debian$", "^line 7$", "\\Aline 0$", "\\Aline 1$", "(?<=line 5)\n", "^ine 5",
+        })
+        {
+            final ActivationProperty property = new ActivationProperty();
+            property.setValue(value);
+            assertEquals(
+                value,
+                Pattern.compile(value, Pattern.MULTILINE).matcher(contents).find(),
+                regex.isActive(file.getPath(), property, null, context, this.problems)
+            );
+        }
+
+        this.verifyAll();
+    }
+
     private static final class Contains extends FileContainsActivator
     {
-        private Contains(final Logger logger)
+        private Contains(final Logger logger, final ActivationSession session)
         {
-            super(logger);
+            super(logger, session);
         }
 
         @Override
@@ -213,9 +476,9 @@ public class TestFileActivators extends EasyMockSupport
 
     private static final class Regex extends FileRegexActivator
     {
-        private Regex(final Logger logger)
+        private Regex(final Logger logger, final ActivationSession session)
         {
-            super(logger);
+            super(logger, session);
         }
 
         @Override
@@ -0,0 +1,203 @@
+/*
+ * Copyright © 2010-2023 OddSource Code (license@oddsource.io)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.oddsource.java.tests.unit;
+
+import static org.easymock.EasyMock.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.ActivationProperty;
+import org.apache.maven.model.profile.ProfileActivationContext;
+import org.codehaus.plexus.logging.Logger;
+import org.easymock.EasyMockRule;
+import org.easymock.EasyMockSupport;
+import org.easymock.Mock;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import io.oddsource.java.maven.profile.ActivationSession;
+import io.oddsource.java.maven.profile.FinerActivator;
+import io.oddsource.java.maven.profile.FinerSessionParticipant;
+
+public class TestFinerSessionParticipant extends EasyMockSupport
+{
+    /**
+     * Mocking.
+     */
+    @Rule
+    public EasyMockRule rule = new EasyMockRule(this);
+
+    @Mock
+    private Logger logger;
+
+    @Mock
+    private MavenSession mavenSession;
+
+    @Mock
+    private FinerActivator finer1;
+
+    @Mock
+    private FinerActivator finer2;
+
+    private FinerSessionParticipant participant;
+
+    @Before
+    public void setUp()
+    {
+        expect(this.logger.isDebugEnabled()).andReturn(true).anyTimes();
+        this.logger.debug(anyString());
+        expectLastCall().anyTimes();
+
+        this.participant = new FinerSessionParticipant(
+            this.logger,
+            new ActivationSession(),
+            Arrays.asList(this.finer1, this.finer2)
+        );
+    }
+
+    @Test
+    public void testNoPrefetchByDefault() throws IOException
+    {
+        final MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setPom(this.reactor().toFile());
+        expect(this.mavenSession.getRequest()).andReturn(request).anyTimes();
+
+        this.replayAll();
+
+        this.participant.afterSessionStart(this.mavenSession);
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testPrefetchReactor() throws IOException
+    {
+        final MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setPom(this.reactor().toFile());
+        request.getUserProperties().setProperty("finer.activator.prefetch", "true");
+        expect(this.mavenSession.getRequest()).andReturn(request).anyTimes();
+
+        expect(this.finer1.getSupportedActivatorBracketName()).andReturn("ONE").anyTimes();
+        expect(this.finer2.getSupportedActivatorBracketName()).andReturn("TWO").anyTimes();
+        this.finer1.prefetch(
+            eq("echo root"),
+            anyObject(ActivationProperty.class),
+            anyObject(ProfileActivationContext.class)
+        );
+        expectLastCall().once();
+        this.finer2.prefetch(
+            eq("echo child"),
+            anyObject(ActivationProperty.class),
+            anyObject(ProfileActivationContext.class)
+        );
+        expectLastCall().once();
+
+        this.replayAll();
+
+        this.participant.afterSessionStart(this.mavenSession);
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testPrefetchParents() throws IOException
+    {
+        final Path root = Files.createTempDirectory("testFinerSessionParticipant");
+        root.toFile().deleteOnExit();
+        final Path child = Files.createDirectory(root.resolve("child"));
+        child.toFile().deleteOnExit();
+        final Path sibling = Files.createDirectory(root.resolve("sibling"));
+        sibling.toFile().deleteOnExit();
+
+        // only the child is built, but the profiles of its parent apply to it, unlike those of its sibling
+        this.pom(
+            root,
+            "<groupId>g</groupId><artifactId>root</artifactId><modules><module>child</module>" +
+            "<module>sibling</module></modules>",
+            "[FINER.ACTIVATOR.ONE]echo root"
+        );
+        this.pom(
+            sibling,
+            "<parent><groupId>g</groupId><artifactId>root</artifactId></parent><artifactId>sibling</artifactId>",
+            "[FINER.ACTIVATOR.ONE]echo sibling"
+        );
+        final Path pom = this.pom(
+            child,
+            "<parent><groupId>g</groupId><artifactId>root</artifactId></parent><artifactId>child</artifactId>",
+            "[FINER.ACTIVATOR.TWO]echo child"
+        );
+
+        final MavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setPom(pom.toFile());
+        request.getUserProperties().setProperty("finer.activator.prefetch", "true");
+        expect(this.mavenSession.getRequest()).andReturn(request).anyTimes();
+
+        expect(this.finer1.getSupportedActivatorBracketName()).andReturn("ONE").anyTimes();
+        expect(this.finer2.getSupportedActivatorBracketName()).andReturn("TWO").anyTimes();
+        this.finer1.prefetch(
+            eq("echo root"),
+            anyObject(ActivationProperty.class),
+            anyObject(ProfileActivationContext.class)
+        );
+        expectLastCall().once();
+        this.finer2.prefetch(
+            eq("echo child"),
+            anyObject(ActivationProperty.class),
+            anyObject(ProfileActivationContext.class)
+        );
+        expectLastCall().once();
+
+        this.replayAll();
+
+        this.participant.afterSessionStart(this.mavenSession);
+
+        this.verifyAll();
+    }
+
+    private Path reactor() throws IOException
+    {
+        final Path root = Files.createTempDirectory("testFinerSessionParticipant");
+        root.toFile().deleteOnExit();
+        final Path child = Files.createDirectory(root.resolve("child"));
+        child.toFile().deleteOnExit();
+
+        this.pom(child, "", "[FINER.ACTIVATOR.TWO]echo child");
+        return this.pom(root, "<modules><module>child</module></modules>", "[FINER.ACTIVATOR.ONE]echo root");
+    }
+
+    private Path pom(final Path directory, final String elements, final String propertyName) throws IOException
+    {
+        final Path pom = directory.resolve("pom.xml");
+        Files.write(pom, (
+            "<project><modelVersion>4.0.0</modelVersion>" + elements +
+            "<profiles><profile><id>finer</id><activation><property><name>" + propertyName +
+            "</name></property></activation></profile>" +
+            "<profile><id>standard</id><activation><property><name>foo</name></property></activation></profile>" +
+            "</profiles></project>"
+        ).getBytes(StandardCharsets.UTF_8));
+        pom.toFile().deleteOnExit();
+        return pom;
+    }
+}
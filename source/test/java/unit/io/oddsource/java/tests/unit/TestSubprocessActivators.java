@@ -18,13 +18,38 @@ package io.oddsource.java.tests.unit;
 
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import org.apache.maven.model.ActivationProperty;
 import org.apache.maven.model.building.ModelProblem;
 import org.apache.maven.model.building.ModelProblemCollector;
 import org.apache.maven.model.building.ModelProblemCollectorRequest;
+import org.apache.maven.model.profile.DefaultProfileActivationContext;
+import org.apache.maven.model.profile.ProfileActivationContext;
 import org.codehaus.plexus.logging.Logger;
 import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.easymock.EasyMockRule;
 import org.easymock.EasyMockSupport;
 import org.easymock.Mock;
@@ -32,9 +57,11 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 
+import io.oddsource.java.maven.profile.ActivationSession;
 import io.oddsource.java.maven.profile.SubprocessExitCodeActivator;
 import io.oddsource.java.maven.profile.SubprocessOutputActivator;
 import io.oddsource.java.maven.profile.SubprocessRegexActivator;
+import io.oddsource.java.maven.profile.SubprocessVersionActivator;
 
 public class TestSubprocessActivators extends EasyMockSupport
 {
@@ -50,6 +77,15 @@ public class TestSubprocessActivators extends EasyMockSupport
     @Mock
     private ModelProblemCollector problems;
 
+    private final ProfileActivationContext defaultContext = new DefaultProfileActivationContext();
+
+    private static void assumePosixShell()
+    {
+        // these tests run sh, sleep, yes and kill, which Windows does not have
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+        assumeTrue(new File("/bin/sh").canExecute());
+    }
+
     @Before
     public void setUp()
     {
@@ -71,7 +107,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("Not A Number!");
 
-        final ExitCode activator = new ExitCode(this.logger);
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(0, "hello", property, this.problems);
         assertFalse(result);
         assertTrue(capture.hasCaptured());
@@ -96,7 +132,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("0");
 
-        final ExitCode activator = new ExitCode(this.logger);
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(5, "hello", property, this.problems);
         assertFalse(result);
 
@@ -111,7 +147,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("10");
 
-        final ExitCode activator = new ExitCode(this.logger);
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(10, "hello", property, this.problems);
         assertTrue(result);
 
@@ -126,7 +162,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("hello");
 
-        final Output activator = new Output(this.logger);
+        final Output activator = new Output(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(0, "", property, this.problems);
         assertFalse(result);
 
@@ -141,7 +177,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("hello");
 
-        final Output activator = new Output(this.logger);
+        final Output activator = new Output(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(
             0,
             "No lowercase HELLO in here",
@@ -161,7 +197,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("hello");
 
-        final Output activator = new Output(this.logger);
+        final Output activator = new Output(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(
             0,
             "Yes lowercase hello in here",
@@ -184,7 +220,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("(()([/this should confuse it");
 
-        final Regex activator = new Regex(this.logger);
+        final Regex activator = new Regex(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(0, "hello", property, this.problems);
         assertFalse(result);
         assertTrue(capture.hasCaptured());
@@ -206,7 +242,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("(()([/this should confuse it");
 
-        final Regex activator = new Regex(this.logger);
+        final Regex activator = new Regex(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(0, "", property, this.problems);
         assertFalse(result);
         assertTrue(capture.hasCaptured());
@@ -225,7 +261,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("(hello|goodbye)");
 
-        final Regex activator = new Regex(this.logger);
+        final Regex activator = new Regex(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(0, "", property, this.problems);
         assertFalse(result);
 
@@ -240,7 +276,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("(hello|goodbye)");
 
-        final Regex activator = new Regex(this.logger);
+        final Regex activator = new Regex(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(
             0,
             "somewhere in this output\nwe do not say\nwhat it is looking for",
@@ -260,7 +296,7 @@ public class TestSubprocessActivators extends EasyMockSupport
         final ActivationProperty property = new ActivationProperty();
         property.setValue("(hello|goodbye)");
 
-        final Regex activator = new Regex(this.logger);
+        final Regex activator = new Regex(this.logger, new ActivationSession());
         final boolean result = activator.processResultMatches(
             0,
             "somewhere in this output\nwe say hello\nand that's what it is looking for",
@@ -272,11 +308,1059 @@ public class TestSubprocessActivators extends EasyMockSupport
         this.verifyAll();
     }
 
+    @Test
+    public void testActivatorsShareOneExecutionPerSession() throws IOException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final File counter = File.createTempFile("testActivatorsShareOneExecutionPerSession", ".txt");
+        counter.deleteOnExit();
+        final String command = "sh -c 'echo executed >> " + counter.getPath() + "; echo hello world'";
+
+        final ActivationProperty exitCode = new ActivationProperty();
+        exitCode.setValue("0");
+        final ActivationProperty contains = new ActivationProperty();
+        contains.setValue("hello");
+        final ActivationProperty regex = new ActivationProperty();
+        regex.setValue("^hello w.*$");
+
+        final ActivationSession session = new ActivationSession();
+        final ProfileActivationContext context = this.defaultContext;
+        assertTrue(new Output(this.logger, session).isActive(command, contains, null, context, this.problems));
+        assertTrue(new Regex(this.logger, session).isActive(command, regex, null, context, this.problems));
+        assertTrue(new ExitCode(this.logger, session).isActive(command, exitCode, null, context, this.problems));
+
+        assertEquals(1, Files.readAllLines(counter.toPath()).size());
+
+        assertTrue(new ExitCode(this.logger, new ActivationSession()).isActive(
+            command, exitCode, null, this.defaultContext, this.problems
+        ));
+
+        assertEquals(2, Files.readAllLines(counter.toPath()).size());
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testConcurrentActivationsShareOneExecution()
+        throws IOException, InterruptedException, ExecutionException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final File counter = File.createTempFile("testConcurrentActivationsShareOneExecution", ".txt");
+        counter.deleteOnExit();
+        final String command = "sh -c 'echo executed >> " + counter.getPath() + "; sleep 3; echo hello world'";
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("hello");
+
+        final Output activator = new Output(this.logger, new ActivationSession());
+        final List<Callable<Boolean>> evaluations = new ArrayList<>();
+        for(int i = 0; i < 8; i++)
+        {
+            evaluations.add(() -> activator.isActive(command, property, null, this.defaultContext, this.problems));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(evaluations.size());
+        try
+        {
+            for(final Future<Boolean> result : executor.invokeAll(evaluations))
+            {
+                assertTrue(result.get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, Files.readAllLines(counter.toPath()).size());
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testMaxConcurrentLimitsSimultaneousProcesses()
+        throws IOException, InterruptedException, ExecutionException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final File log = File.createTempFile("testMaxConcurrentLimitsSimultaneousProcesses", ".txt");
+        log.deleteOnExit();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("0");
+
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
+        final ProfileActivationContext context = this.context("maxConcurrent", "1");
+        final List<Callable<Boolean>> evaluations = new ArrayList<>();
+        for(int i = 0; i < 4; i++)
+        {
+            final String command = "sh -c 'echo start >> " + log.getPath() + "; sleep 0.2; echo end >> " +
+                                   log.getPath() + "' " + i;
+            evaluations.add(() -> activator.isActive(command, property, null, context, this.problems));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(evaluations.size());
+        try
+        {
+            for(final Future<Boolean> result : executor.invokeAll(evaluations))
+            {
+                assertTrue(result.get());
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        final List<String> lines = Files.readAllLines(log.toPath());
+        assertEquals(8, lines.size());
+        for(int i = 0; i < lines.size(); i++)
+        {
+            assertEquals(i % 2 == 0 ? "start" : "end", lines.get(i));
+        }
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testInvalidMaxConcurrent()
+    {
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("0");
+
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
+        assertFalse(activator.isActive("true", property, null, this.context("maxConcurrent", "0"), this.problems));
+        assertTrue(capture.hasCaptured());
+        // reported once per session, after which the default limit is used
+        assertTrue(activator.isActive("true", property, null, this.context("maxConcurrent", "0"), this.problems));
+
+        final ModelProblemCollectorRequest request = capture.getValue();
+        assertNotNull(request);
+        assertEquals(ModelProblem.Severity.ERROR, request.getSeverity());
+        assertEquals(
+            "The property 'finer.activator.subprocess.maxConcurrent' ('0') must be a positive number.",
+            request.getMessage()
+        );
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testCoprocessMode()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final ActivationProperty exitCode = new ActivationProperty();
+        exitCode.setValue("3");
+        final ActivationProperty contains = new ActivationProperty();
+        contains.setValue("it's\nerr");
+        final ActivationProperty regex = new ActivationProperty();
+        regex.setValue("^b$");
+
+        final ActivationSession session = new ActivationSession();
+        final ProfileActivationContext context = this.context("coprocess", "true");
+        assertTrue(new ExitCode(this.logger, session).isActive(
+            "sh -c 'exit 3'", exitCode, null, context, this.problems
+        ));
+        assertTrue(new Output(this.logger, session).isActive(
+            "sh -c \"echo \\\"it's\\\"; echo err >&2\"", contains, null, context, this.problems
+        ));
+        assertTrue(new Regex(this.logger, session).isActive(
+            "printf 'a\\nb\\n\\n'", regex, null, context, this.problems
+        ));
+        assertFalse(capture.hasCaptured());
+
+        // a command that cannot be found fails the same way as without the shell
+        assertFalse(new ExitCode(this.logger, session).isActive(
+            "no-such-command-exists", exitCode, null, context, this.problems
+        ));
+        assertTrue(capture.hasCaptured());
+        assertTrue(capture.getValue().getMessage().startsWith(
+            "The command named by the property 'name' (`[no-such-command-exists]`) could not be executed because " +
+            "an I/O error occurred: "
+        ));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testBuiltinsMatchExecution() throws IOException, InterruptedException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+        expectLastCall().anyTimes();
+
+        this.replayAll();
+
+        final File file = File.createTempFile("testBuiltinsMatchExecution", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), "hello\nworld\n".getBytes(StandardCharsets.UTF_8));
+
+        final ProfileActivationContext[] contexts = {this.defaultContext, this.context("builtins", "false")};
+        for(final String command : new String[] {
+            "uname", "uname -s", "uname -m", "uname -r", "hostname", "nproc", "id -u", "cat " + file.getPath(),
+        })
+        {
+            final Process process = new ProcessBuilder(command.split(" ")).redirectErrorStream(true).start();
+            final String output;
+            try(BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8)
+            ))
+            {
+                output = reader.lines().collect(Collectors.joining("\n"));
+            }
+            assertEquals(command, 0, process.waitFor());
+
+            final ActivationProperty regex = new ActivationProperty();
+            regex.setValue("\\A" + Pattern.quote(output) + "\\z");
+            for(final ProfileActivationContext context : contexts)
+            {
+                assertTrue(command, new Regex(this.logger, new ActivationSession()).isActive(
+                    command, regex, null, context, this.problems
+                ));
+            }
+        }
+
+        final ActivationProperty zero = new ActivationProperty();
+        zero.setValue("0");
+        final ActivationProperty one = new ActivationProperty();
+        one.setValue("1");
+        for(final ProfileActivationContext context : contexts)
+        {
+            final ActivationSession session = new ActivationSession();
+            final ExitCode activator = new ExitCode(this.logger, session);
+            assertTrue(activator.isActive("test -f " + file.getPath(), zero, null, context, this.problems));
+            assertTrue(activator.isActive("test -d " + file.getPath(), one, null, context, this.problems));
+            assertTrue(activator.isActive("test -x " + file.getPath(), one, null, context, this.problems));
+            assertTrue(activator.isActive("test -d " + file.getParent(), zero, null, context, this.problems));
+            assertTrue(activator.isActive("test -e " + file.getPath() + ".no", one, null, context, this.problems));
+            // an empty operand names no file, not the working directory
+            for(final String operator : new String[] {"-e", "-f", "-d", "-x"})
+            {
+                assertTrue(activator.isActive("test " + operator + " ''", one, null, context, this.problems));
+            }
+        }
+        assertFalse(capture.hasCaptured());
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testExitCodeOnlyExecutionIsNotReusedForOutput() throws IOException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final File counter = File.createTempFile("testExitCodeOnlyExecutionIsNotReusedForOutput", ".txt");
+        counter.deleteOnExit();
+        final String command = "sh -c 'echo executed >> " + counter.getPath() + "; echo hello world; exit 3'";
+
+        final ActivationProperty exitCode = new ActivationProperty();
+        exitCode.setValue("3");
+        final ActivationProperty contains = new ActivationProperty();
+        contains.setValue("hello");
+
+        final ActivationSession session = new ActivationSession();
+        final ProfileActivationContext context = this.defaultContext;
+        assertTrue(new ExitCode(this.logger, session).isActive(command, exitCode, null, context, this.problems));
+        assertTrue(new ExitCode(this.logger, session).isActive(command, exitCode, null, context, this.problems));
+
+        assertEquals(1, Files.readAllLines(counter.toPath()).size());
+
+        assertTrue(new Output(this.logger, session).isActive(command, contains, null, context, this.problems));
+        assertTrue(new ExitCode(this.logger, session).isActive(command, exitCode, null, context, this.problems));
+
+        assertEquals(2, Files.readAllLines(counter.toPath()).size());
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testExitCodeActivatorDoesNotExecuteForInvalidValue() throws IOException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final File counter = File.createTempFile("testExitCodeActivatorDoesNotExecuteForInvalidValue", ".txt");
+        counter.deleteOnExit();
+        final String command = "sh -c 'echo executed >> " + counter.getPath() + "'";
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("zero");
+
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
+        assertFalse(activator.isActive(command, property, null, this.defaultContext, this.problems));
+        assertTrue(capture.hasCaptured());
+        assertEquals(0, Files.readAllLines(counter.toPath()).size());
+
+        final ModelProblemCollectorRequest request = capture.getValue();
+        assertNotNull(request);
+        assertEquals(ModelProblem.Severity.ERROR, request.getSeverity());
+        assertEquals("The property 'value' ('zero') could not be converted to a long.", request.getMessage());
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testExitCodeActivatorIgnoresLargeOutput()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("7");
+
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
+        assertTrue(activator.isActive(
+            "sh -c 'seq 1 200000; seq 1 200000 >&2; exit 7'", property, null, this.context("maxOutput", "10"),
+            this.problems
+        ));
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testStandardInputIsClosed()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("0");
+
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
+        assertTrue(activator.isActive("cat", property, null, this.context("timeout", "10s"), this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testTimeoutFromPropertyName()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("0");
+
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
+        assertFalse(activator.isActive(
+            "[TIMEOUT=200ms][UTF-8]sleep 15", property, null, this.context("timeout", "10s"), this.problems
+        ));
+        assertTrue(capture.hasCaptured());
+
+        final ModelProblemCollectorRequest request = capture.getValue();
+        assertNotNull(request);
+        assertEquals(ModelProblem.Severity.ERROR, request.getSeverity());
+        assertEquals(
+            "The command named by the property 'name' (`[sleep, 15]`) timed out after 200 milliseconds.",
+            request.getMessage()
+        );
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testTimeoutFromUserProperty()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("hello");
+
+        final Output activator = new Output(this.logger, new ActivationSession());
+        assertFalse(activator.isActive(
+            "sh -c 'echo hello; sleep 15'", property, null, this.context("timeout", "1s"), this.problems
+        ));
+        assertTrue(capture.hasCaptured());
+
+        final ModelProblemCollectorRequest request = capture.getValue();
+        assertNotNull(request);
+        assertEquals(ModelProblem.Severity.ERROR, request.getSeverity());
+        assertEquals(
+            "The command named by the property 'name' (`[sh, -c, echo hello; sleep 15]`) timed out after 1 second.",
+            request.getMessage()
+        );
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testFailuresAreReportedOncePerSession() throws IOException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+        expectLastCall().times(3);
+
+        this.replayAll();
+
+        final File counter = File.createTempFile("testFailuresAreReportedOncePerSession", ".txt");
+        counter.deleteOnExit();
+        final String command = "sh -c 'echo executed >> " + counter.getPath() + "; sleep 60'";
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("0");
+
+        final ActivationSession session = new ActivationSession();
+        final ExitCode activator = new ExitCode(this.logger, session);
+        for(int i = 0; i < 3; i++)
+        {
+            assertFalse(activator.isActive(
+                "[TIMEOUT=2s]" + command, property, null, this.defaultContext, this.problems
+            ));
+        }
+        assertEquals(1, Files.readAllLines(counter.toPath()).size());
+        assertEquals(
+            "The command named by the property 'name' (`[sh, -c, echo executed >> " + counter.getPath() +
+            "; sleep 60]`) timed out after 2 seconds.",
+            capture.getValue().getMessage()
+        );
+
+        // the command might complete with more time, so it is executed again
+        assertFalse(activator.isActive("[TIMEOUT=3s]" + command, property, null, this.defaultContext, this.problems));
+        assertFalse(activator.isActive(
+            "[TIMEOUT=2500ms]" + command, property, null, this.defaultContext, this.problems
+        ));
+        assertEquals(2, Files.readAllLines(counter.toPath()).size());
+        assertTrue(capture.getValue().getMessage().endsWith("timed out after 3 seconds."));
+
+        // a failure while prefetching is reported by the first evaluation
+        activator.prefetch("no-such-command-exists", property, this.defaultContext);
+        assertFalse(activator.isActive("no-such-command-exists", property, null, this.defaultContext, this.problems));
+        assertFalse(activator.isActive("no-such-command-exists", property, null, this.defaultContext, this.problems));
+        assertTrue(capture.getValue().getMessage().startsWith(
+            "The command named by the property 'name' (`[no-such-command-exists]`) could not be executed because " +
+            "an I/O error occurred: "
+        ));
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testInterruptKillsProcessAndRestoresInterruptStatus() throws Exception
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final File pid = File.createTempFile("testInterruptKillsProcessAndRestoresInterruptStatus", ".txt");
+        pid.deleteOnExit();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("0");
+
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
+        final boolean[] outcome = new boolean[2];
+        final Thread thread = new Thread(() -> {
+            outcome[0] = activator.isActive(
+                "sh -c 'echo $$ > " + pid.getPath() + "; sleep 15; exit 0'",
+                property,
+                null,
+                this.defaultContext,
+                this.problems
+            );
+            outcome[1] = Thread.currentThread().isInterrupted();
+        });
+        thread.start();
+        final long started = System.nanoTime();
+        while(pid.length() == 0)
+        {
+            assertTrue("The process did not start.", System.nanoTime() - started < TimeUnit.SECONDS.toNanos(10));
+            Thread.sleep(10L);
+        }
+        thread.interrupt();
+        thread.join();
+
+        assertFalse(outcome[0]);
+        assertTrue(outcome[1]);
+        assertEquals(
+            "The command named by the property 'name' (`[sh, -c, echo $$ > " + pid.getPath() +
+            "; sleep 15; exit 0]`) was interrupted.",
+            capture.getValue().getMessage()
+        );
+        // the killed process may take a moment to be reaped
+        final String processId = Files.readAllLines(pid.toPath()).get(0).trim();
+        final long killed = System.nanoTime();
+        while(new ProcessBuilder("kill", "-0", processId).start().waitFor() == 0)
+        {
+            assertTrue("The process was not killed.", System.nanoTime() - killed < TimeUnit.SECONDS.toNanos(10));
+            Thread.sleep(10L);
+        }
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testActivationBudget()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        final Capture<ModelProblemCollectorRequest> capture = newCapture(CaptureType.ALL);
+        this.problems.add(capture(capture));
+        expectLastCall().times(5);
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("0");
+
+        final Map<String, String> properties = new HashMap<>();
+        properties.put("finer.activator.budget", "5s");
+        final DefaultProfileActivationContext context = new DefaultProfileActivationContext();
+        context.setUserProperties(properties);
+
+        // commands may take no longer than what is left of the budget, and once it is used up, nothing is executed
+        final ActivationSession session = new ActivationSession();
+        final ExitCode activator = new ExitCode(this.logger, session);
+        assertFalse(activator.isActive("[TIMEOUT=2s]sleep 60", property, null, context, this.problems));
+        assertTrue(activator.isActive("true", property, null, context, this.problems));
+        assertFalse(activator.isActive("sleep 59", property, null, context, this.problems));
+        assertFalse(activator.isActive("echo", property, null, context, this.problems));
+        assertFalse(activator.isActive("echo", property, null, context, this.problems));
+        // results from before the budget was used up are still used
+        assertTrue(activator.isActive("true", property, null, context, this.problems));
+
+        properties.put("finer.activator.budget", "1s");
+        properties.put("finer.activator.budget.policy", "fail");
+        context.setUserProperties(properties);
+        final ExitCode failing = new ExitCode(this.logger, new ActivationSession());
+        assertFalse(failing.isActive("sleep 60", property, null, context, this.problems));
+        assertFalse(failing.isActive("echo", property, null, context, this.problems));
+
+        final List<ModelProblemCollectorRequest> requests = capture.getValues();
+        assertEquals(5, requests.size());
+        assertEquals(
+            "The command named by the property 'name' (`[sleep, 60]`) timed out after 2 seconds.",
+            requests.get(0).getMessage()
+        );
+        assertTrue(requests.get(1).getMessage(), requests.get(1).getMessage().startsWith(
+            "The command named by the property 'name' (`[sleep, 59]`) timed out after "
+        ));
+        final String exhausted = requests.get(2).getMessage();
+        assertEquals(ModelProblem.Severity.WARNING, requests.get(2).getSeverity());
+        assertTrue(exhausted, exhausted.startsWith(
+            "The finer activation budget of 5 seconds ('finer.activator.budget') was exhausted, so this and all " +
+            "remaining finer activations that execute commands or read files are inactive. Finer activations spent "
+        ));
+        assertTrue(exhausted, exhausted.contains(" executing commands and reading files, most of it on command "));
+        assertTrue(exhausted, exhausted.contains("command [sleep, 60] ("));
+        assertTrue(exhausted, exhausted.contains("command [sleep, 59] ("));
+        assertTrue(requests.get(3).getMessage(), requests.get(3).getMessage().startsWith(
+            "The command named by the property 'name' (`[sleep, 60]`) timed out after "
+        ));
+        assertEquals(ModelProblem.Severity.ERROR, requests.get(4).getSeverity());
+        assertTrue(requests.get(4).getMessage(), requests.get(4).getMessage().startsWith(
+            "The finer activation budget of 1 second ('finer.activator.budget') was exhausted"
+        ));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testInvalidTimeout()
+    {
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("0");
+
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
+        assertFalse(activator.isActive("true", property, null, this.context("timeout", "soon"), this.problems));
+        assertTrue(capture.hasCaptured());
+
+        final ModelProblemCollectorRequest request = capture.getValue();
+        assertNotNull(request);
+        assertEquals(ModelProblem.Severity.ERROR, request.getSeverity());
+        assertEquals(
+            "The property 'finer.activator.subprocess.timeout' ('soon') must be a positive duration, such as " +
+            "'500ms', '5s', or '2m'.",
+            request.getMessage()
+        );
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testPersistentCacheAcrossSessions() throws IOException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final File counter = File.createTempFile("testPersistentCacheAcrossSessions", ".txt");
+        counter.deleteOnExit();
+        final File directory = Files.createTempDirectory("testPersistentCacheAcrossSessions").toFile();
+        final String command = "sh -c 'echo executed >> " + counter.getPath() + "; echo hello world; exit 3'";
+
+        final ActivationProperty exitCode = new ActivationProperty();
+        exitCode.setValue("3");
+        final ActivationProperty contains = new ActivationProperty();
+        contains.setValue("hello");
+
+        final Map<String, String> properties = new HashMap<>();
+        properties.put("finer.activator.subprocess.cache", "1h");
+        properties.put("finer.activator.subprocess.cache.directory", directory.getPath());
+        final DefaultProfileActivationContext context = new DefaultProfileActivationContext();
+        context.setUserProperties(properties);
+
+        // an exit code alone does not serve an activator that needs the output
+        assertTrue(new ExitCode(this.logger, new ActivationSession()).isActive(
+            command, exitCode, null, context, this.problems
+        ));
+        assertTrue(new ExitCode(this.logger, new ActivationSession()).isActive(
+            command, exitCode, null, context, this.problems
+        ));
+        assertEquals(1, Files.readAllLines(counter.toPath()).size());
+        assertTrue(new Output(this.logger, new ActivationSession()).isActive(
+            command, contains, null, context, this.problems
+        ));
+        assertEquals(2, Files.readAllLines(counter.toPath()).size());
+
+        // each session reads the file again, as another build would
+        assertTrue(new Output(this.logger, new ActivationSession()).isActive(
+            command, contains, null, context, this.problems
+        ));
+        assertTrue(new ExitCode(this.logger, new ActivationSession()).isActive(
+            command, exitCode, null, context, this.problems
+        ));
+        assertEquals(2, Files.readAllLines(counter.toPath()).size());
+
+        properties.put("finer.activator.subprocess.cache.clear", "true");
+        context.setUserProperties(properties);
+        assertTrue(new Output(this.logger, new ActivationSession()).isActive(
+            command, contains, null, context, this.problems
+        ));
+        assertEquals(3, Files.readAllLines(counter.toPath()).size());
+
+        properties.put("finer.activator.subprocess.cache", "false");
+        context.setUserProperties(properties);
+        assertTrue(new Output(this.logger, new ActivationSession()).isActive(
+            command, contains, null, context, this.problems
+        ));
+        assertEquals(4, Files.readAllLines(counter.toPath()).size());
+
+        for(final File file : directory.listFiles())
+        {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory.toPath());
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testPersistentCacheClearedWhileDisabled() throws IOException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final File counter = File.createTempFile("testPersistentCacheClearedWhileDisabled", ".txt");
+        counter.deleteOnExit();
+        final File directory = Files.createTempDirectory("testPersistentCacheClearedWhileDisabled").toFile();
+        final String command = "sh -c 'echo executed >> " + counter.getPath() + "; exit 3'";
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("3");
+
+        final Map<String, String> properties = new HashMap<>();
+        properties.put("finer.activator.subprocess.cache", "1h");
+        properties.put("finer.activator.subprocess.cache.directory", directory.getPath());
+        final DefaultProfileActivationContext context = new DefaultProfileActivationContext();
+        context.setUserProperties(properties);
+
+        assertTrue(new ExitCode(this.logger, new ActivationSession()).isActive(
+            command, property, null, context, this.problems
+        ));
+        assertEquals(1, Files.readAllLines(counter.toPath()).size());
+
+        // clearing the cache does not need it to be enabled
+        properties.remove("finer.activator.subprocess.cache");
+        properties.put("finer.activator.subprocess.cache.clear", "true");
+        context.setUserProperties(properties);
+        assertTrue(new ExitCode(this.logger, new ActivationSession()).isActive(
+            command, property, null, context, this.problems
+        ));
+        assertEquals(2, Files.readAllLines(counter.toPath()).size());
+        assertFalse(new File(directory, "subprocess-results.bin").exists());
+
+        properties.put("finer.activator.subprocess.cache", "1h");
+        properties.remove("finer.activator.subprocess.cache.clear");
+        context.setUserProperties(properties);
+        assertTrue(new ExitCode(this.logger, new ActivationSession()).isActive(
+            command, property, null, context, this.problems
+        ));
+        assertEquals(3, Files.readAllLines(counter.toPath()).size());
+
+        for(final File file : directory.listFiles())
+        {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory.toPath());
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testInvalidCacheTimeToLive()
+    {
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("0");
+
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
+        assertFalse(activator.isActive("true", property, null, this.context("cache", "forever"), this.problems));
+        assertTrue(capture.hasCaptured());
+
+        final ModelProblemCollectorRequest request = capture.getValue();
+        assertNotNull(request);
+        assertEquals(ModelProblem.Severity.ERROR, request.getSeverity());
+        assertEquals(
+            "The property 'finer.activator.subprocess.cache' ('forever') must be a positive duration, such as " +
+            "'30s', '10m', or '2h', or 'false'.",
+            request.getMessage()
+        );
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testOutputLargerThanThePipeBufferDoesNotBlock()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("199999");
+
+        final Output activator = new Output(this.logger, new ActivationSession());
+        assertTrue(activator.isActive("seq 1 200000", property, null, this.defaultContext, this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testStreamingOutputActivatorStopsAtFirstMatch()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("hello\nhello");
+
+        // `yes` never exits on its own, so this can only pass if the process is stopped once a match is found
+        final Output activator = new Output(this.logger, new ActivationSession());
+        assertTrue(activator.isActive("yes hello", property, null, this.streamingContext(), this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testStreamingRegexActivator()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final ActivationProperty matches = new ActivationProperty();
+        matches.setValue("^7(0|5)00[0-9]$");
+        final ActivationProperty doesNotMatch = new ActivationProperty();
+        doesNotMatch.setValue("^x");
+
+        final Regex activator = new Regex(this.logger, new ActivationSession());
+        assertTrue(activator.isActive("seq 1 100000", matches, null, this.streamingContext(), this.problems));
+        assertFalse(activator.isActive("seq 1 100000", doesNotMatch, null, this.streamingContext(), this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test(timeout = 20000L)
+    public void testStreamingActivatorsLongLines() throws IOException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        // a line much longer than the window of the regular expression activator, then every kind of line break
+        final File script = File.createTempFile("testStreamingActivatorsLongLines", ".sh");
+        script.deleteOnExit();
+        Files.write(
+            script.toPath(),
+            "head -c 500000 /dev/zero | tr '\\0' a\nprintf 'b\\r\\nc\\rd\\n'\n".getBytes(StandardCharsets.UTF_8)
+        );
+        final String command = "sh " + script.getPath();
+
+        final Output output = new Output(this.logger, new ActivationSession());
+        for(final String value : new String[] {"aab\nc\nd", "b\r", "d\n", "aaaa"})
+        {
+            final ActivationProperty property = new ActivationProperty();
+            property.setValue(value);
+            assertEquals(
+                value,
+                output.isActive(command, property, null, this.defaultContext, this.problems),
+                output.isActive(command, property, null, this.streamingContext(), this.problems)
+            );
+        }
+        final Regex regex = new Regex(this.logger, new ActivationSession());
+        for(final String value : new String[] {"^a{10}b$", "a{10}b$", "^c$", "(?<=a)b", "^a{10}", "\\Aa", "\\Ab"})
+        {
+            final ActivationProperty property = new ActivationProperty();
+            property.setValue(value);
+            assertEquals(
+                value,
+                regex.isActive(command, property, null, this.defaultContext, this.problems),
+                regex.isActive(command, property, null, this.streamingContext(), this.problems)
+            );
+        }
+
+        // a line that never ends, which only bounded memory can match
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("yyyy");
+        final String endless = "sh -c \"yes | tr -d '\\n'\"";
+        assertTrue(output.isActive(endless, property, null, this.streamingContext(), this.problems));
+        property.setValue("y{100}");
+        assertTrue(regex.isActive(endless, property, null, this.streamingContext(), this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testErrorOutputModes()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final String command = "sh -c 'echo standard; echo error >&2'";
+        final ActivationProperty error = new ActivationProperty();
+        error.setValue("error");
+
+        final Output activator = new Output(this.logger, new ActivationSession());
+        assertTrue(activator.isActive(command, error, null, this.context("stderr", "merge"), this.problems));
+        assertFalse(activator.isActive(command, error, null, this.context("stderr", "separate"), this.problems));
+        assertFalse(activator.isActive(command, error, null, this.context("stderr", "DISCARD"), this.problems));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testOutputBeyondLimitIsDiscardedWithWarning()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("1000");
+
+        final Output activator = new Output(this.logger, new ActivationSession());
+        assertFalse(activator.isActive("seq 1 1000", property, null, this.context("maxOutput", "100"), this.problems));
+        assertTrue(capture.hasCaptured());
+
+        final ModelProblemCollectorRequest request = capture.getValue();
+        assertNotNull(request);
+        assertEquals(ModelProblem.Severity.WARNING, request.getSeverity());
+        assertEquals(
+            "The command named by the property 'name' (`[seq, 1, 1000]`) produced more than 100 bytes of output; " +
+            "the remaining 3793 bytes were discarded. Raise 'finer.activator.subprocess.maxOutput' if the activator " +
+            "needs to see them.",
+            request.getMessage()
+        );
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testNameProblemsAreReportedForEveryEvaluation()
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        final Capture<ModelProblemCollectorRequest> capture = newCapture(CaptureType.ALL);
+        this.problems.add(capture(capture));
+        expectLastCall().times(4);
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("0");
+
+        // the names are parsed once for the session, but every model that uses them must see their problems
+        final ExitCode activator = new ExitCode(this.logger, new ActivationSession());
+        for(int i = 0; i < 2; i++)
+        {
+            assertFalse(activator.isActive("[RFC_2952_3]true", property, null, this.defaultContext, this.problems));
+            assertFalse(activator.isActive("[TIMEOUT=5x]true", property, null, this.defaultContext, this.problems));
+        }
+        assertTrue(activator.isActive("[TIMEOUT=5s][UTF-8]true", property, null, this.defaultContext, this.problems));
+
+        assertEquals(4, capture.getValues().size());
+        assertEquals(
+            "The charset from the property 'name' ('[RFC_2952_3]true') is not supported.",
+            capture.getValues().get(2).getMessage()
+        );
+        assertEquals(
+            "The timeout from the property 'name' ('5x') must be a positive duration, such as '500ms', '5s', or '2m'.",
+            capture.getValues().get(3).getMessage()
+        );
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testVersion() throws IOException
+    {
+        TestSubprocessActivators.assumePosixShell();
+
+        this.replayAll();
+
+        final File counter = File.createTempFile("testVersion", ".txt");
+        counter.deleteOnExit();
+        final File tool = File.createTempFile("testVersion", ".sh");
+        tool.deleteOnExit();
+        Files.write(tool.toPath(), (
+            "#!/bin/sh\n" +
+            "echo \"$1\" >> " + counter.getPath() + "\n" +
+            "echo 'tool version 3.10.12, build 2023-07-18'\n"
+        ).getBytes(StandardCharsets.UTF_8));
+        assertTrue(tool.setExecutable(true));
+
+        final SubprocessVersionActivator activator = new SubprocessVersionActivator(
+            this.logger,
+            new ActivationSession()
+        );
+        for(final String value : new String[] {"[3.10,4)", "(,3.10.12]", "3.10", "3", "3.10.12"})
+        {
+            final ActivationProperty property = new ActivationProperty();
+            property.setValue(value);
+            assertTrue(value, activator.isActive(tool.getPath(), property, null, this.defaultContext, this.problems));
+        }
+        for(final String value : new String[] {"[3.11,4)", "(3.10.12,)", "3.1", "4"})
+        {
+            final ActivationProperty property = new ActivationProperty();
+            property.setValue(value);
+            assertFalse(value, activator.isActive(tool.getPath(), property, null, this.defaultContext, this.problems));
+        }
+
+        // executed once, with --version
+        assertEquals(Collections.singletonList("--version"), Files.readAllLines(counter.toPath()));
+
+        // an upgraded tool is executed again
+        assertTrue(tool.setLastModified(tool.lastModified() - 10000));
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("3.10");
+        assertTrue(activator.isActive(tool.getPath(), property, null, this.defaultContext, this.problems));
+        assertTrue(activator.isActive(tool.getPath(), property, null, this.defaultContext, this.problems));
+        assertEquals(2, Files.readAllLines(counter.toPath()).size());
+
+        // a command with arguments is executed as it is
+        assertTrue(activator.isActive(tool.getPath() + " -v", property, null, this.defaultContext, this.problems));
+        assertEquals(Arrays.asList("--version", "--version", "-v"), Files.readAllLines(counter.toPath()));
+
+        // a tool that is not installed has no version
+        assertFalse(activator.isActive(
+            "finer-activator-no-such-program", property, null, this.defaultContext, this.problems
+        ));
+
+        this.verifyAll();
+    }
+
+    @Test
+    public void testVersionInvalidValue()
+    {
+        final Capture<ModelProblemCollectorRequest> capture = newCapture();
+        this.problems.add(capture(capture));
+
+        this.replayAll();
+
+        final ActivationProperty property = new ActivationProperty();
+        property.setValue("[3.10");
+
+        final SubprocessVersionActivator activator = new SubprocessVersionActivator(
+            this.logger,
+            new ActivationSession()
+        );
+        assertFalse(activator.isActive("sh", property, null, this.defaultContext, this.problems));
+        assertTrue(capture.hasCaptured());
+
+        final ModelProblemCollectorRequest request = capture.getValue();
+        assertNotNull(request);
+        assertEquals(ModelProblem.Severity.ERROR, request.getSeverity());
+        assertEquals(
+            "The property 'value' ('[3.10') must be a version range, such as '[3.10,4)', or a version, such as '3.10'.",
+            request.getMessage()
+        );
+
+        this.verifyAll();
+    }
+
+    private ProfileActivationContext context(final String setting, final String value)
+    {
+        final DefaultProfileActivationContext context = new DefaultProfileActivationContext();
+        context.setUserProperties(Collections.singletonMap("finer.activator.subprocess." + setting, value));
+        return context;
+    }
+
+    private ProfileActivationContext streamingContext()
+    {
+        return this.context("streaming", "true");
+    }
+
     private static final class ExitCode extends SubprocessExitCodeActivator
     {
-        private ExitCode(final Logger logger)
+        private ExitCode(final Logger logger, final ActivationSession session)
         {
-            super(logger);
+            super(logger, session);
         }
 
         @Override
@@ -293,9 +1377,9 @@ public class TestSubprocessActivators extends EasyMockSupport
 
     private static final class Output extends SubprocessOutputActivator
     {
-        private Output(final Logger logger)
+        private Output(final Logger logger, final ActivationSession session)
         {
-            super(logger);
+            super(logger, session);
         }
 
         @Override
@@ -312,9 +1396,9 @@ public class TestSubprocessActivators extends EasyMockSupport
 
     private static final class Regex extends SubprocessRegexActivator
     {
-        private Regex(final Logger logger)
+        private Regex(final Logger logger, final ActivationSession session)
         {
-            super(logger);
+            super(logger, session);
         }
 
         @Override
@@ -19,7 +19,10 @@ package io.oddsource.java.tests.unit;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.maven.model.ActivationProperty;
@@ -234,4 +237,76 @@ public class TestUtilities extends EasyMockSupport
             request.getMessage()
         );
     }
+
+    @Test
+    public void testCharsetAndRemainderMatchesPattern()
+    {
+        // the pattern the parser replaced, whose results it must reproduce exactly
+        final Pattern pattern = Pattern.compile("^(?:\\[(?<charset>[a-zA-Z0-9_-]+)])?(?<remainder>.+)$");
+        final String[] subjects = {
+            "plain", "[UTF-8]kept", "[UTF-8]", "[]kept", "[UTF 8]kept", "[UTF-8", "]kept", "[", "[x]", "[UTF-8]]",
+            "[UTF-8][ISO-8859-1]kept", "", "line\nbreak", "[UTF-8]line\rbreak", "[UTF-8]\u2028", "trailing\n",
+            "[utf_16le]kept", "[US-ASCII] spaced ",
+        };
+        final ActivationProperty property = new ActivationProperty();
+        for(final String subject : subjects)
+        {
+            final int[] problems = new int[1];
+            final Utilities.CharsetAndRemainder helper = new Utilities.CharsetAndRemainder(
+                subject,
+                StandardCharsets.ISO_8859_1,
+                property,
+                request -> problems[0]++
+            );
+            final Matcher matcher = pattern.matcher(subject);
+            if(matcher.matches())
+            {
+                final String charset = matcher.group("charset");
+                assertEquals(subject, matcher.group("remainder"), helper.getRemainder());
+                assertEquals(
+                    subject,
+                    charset == null ? StandardCharsets.ISO_8859_1 : Charset.forName(charset),
+                    helper.getCharset()
+                );
+                assertEquals(subject, 0, problems[0]);
+            }
+            else
+            {
+                assertNull(subject, helper.getRemainder());
+                assertNull(subject, helper.getCharset());
+                assertEquals(subject, 1, problems[0]);
+            }
+        }
+    }
+
+    @Test
+    public void testParseDuration()
+    {
+        replayAll();
+
+        assertEquals(TimeUnit.SECONDS.toNanos(5), Utilities.parseDuration("5"));
+        assertEquals(TimeUnit.SECONDS.toNanos(5), Utilities.parseDuration("5s"));
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(250), Utilities.parseDuration(" 250ms "));
+        assertEquals(TimeUnit.MINUTES.toNanos(2), Utilities.parseDuration("2m"));
+        assertEquals(-1, Utilities.parseDuration("0s"));
+        assertEquals(-1, Utilities.parseDuration("-5s"));
+        assertEquals(TimeUnit.HOURS.toNanos(5), Utilities.parseDuration("5h"));
+        assertEquals(-1, Utilities.parseDuration("5d"));
+        assertEquals(-1, Utilities.parseDuration(""));
+
+        verifyAll();
+    }
+
+    @Test
+    public void testFormatDuration()
+    {
+        replayAll();
+
+        assertEquals("30 seconds", Utilities.formatDuration(TimeUnit.SECONDS.toNanos(30)));
+        assertEquals("1 second", Utilities.formatDuration(TimeUnit.SECONDS.toNanos(1)));
+        assertEquals("1500 milliseconds", Utilities.formatDuration(TimeUnit.MILLISECONDS.toNanos(1500)));
+        assertEquals("1 millisecond", Utilities.formatDuration(TimeUnit.MILLISECONDS.toNanos(1)));
+
+        verifyAll();
+    }
 }